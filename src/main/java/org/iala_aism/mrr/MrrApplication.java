@@ -19,10 +19,12 @@ package org.iala_aism.mrr;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.security.Security;
 
 @SpringBootApplication
+@EnableScheduling
 public class MrrApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+import org.neo4j.driver.Values;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Accounts for the Neo4j statements that are run on the thread that handles a request: how many there are, how many
+// rows they return and how long the driver spends on them. The driver is wrapped so that every statement that is run
+// through a session or a transaction is seen, which covers the repositories and the Neo4jClient. Statements run on
+// other threads, such as the fan-out of batch registrations, are not attributed to the request.
+public class QueryTracker {
+
+    private final ThreadLocal<Queries> current = new ThreadLocal<>();
+
+    public Driver wrap(Driver driver) {
+        return proxy(Driver.class, (proxy, method, args) -> {
+            Object result = invoke(method, driver, args);
+            return result instanceof Session session ? wrapSession(session) : result;
+        });
+    }
+
+    // Starts accounting for the statements of the current thread
+    public void begin() {
+        current.set(new Queries());
+    }
+
+    // The statements since begin was called, which are still being added to, or null if nothing is accounted for
+    public Queries current() {
+        return current.get();
+    }
+
+    // Stops accounting and returns the statements since begin was called
+    public Queries end() {
+        Queries queries = current.get();
+        current.remove();
+        return queries != null ? queries : new Queries();
+    }
+
+    private Session wrapSession(Session session) {
+        return proxy(Session.class, (proxy, method, args) -> {
+            if (method.getName().equals("run"))
+                return run(session, method, args);
+            Object result = invoke(method, session, args);
+            return result instanceof Transaction transaction ? wrapTransaction(transaction) : result;
+        });
+    }
+
+    private Transaction wrapTransaction(Transaction transaction) {
+        return proxy(Transaction.class, (proxy, method, args) -> method.getName().equals("run")
+                ? run(transaction, method, args)
+                : invoke(method, transaction, args));
+    }
+
+    private Object run(Object runner, Method method, Object[] args) throws Throwable {
+        Queries queries = current.get();
+        if (queries == null)
+            return invoke(method, runner, args);
+        Statement statement = queries.add(args[0] instanceof Query query ? query.text() : String.valueOf(args[0]),
+                args[0] instanceof Query query ? query : args.length > 1 ? args[1] : null);
+        try {
+            Object result = invoke(method, runner, args);
+            return result instanceof Result rs ? wrapResult(rs, statement) : result;
+        } finally {
+            statement.touch();
+        }
+    }
+
+    // Rows are pulled lazily, so the time of a statement lasts until its last row has been read
+    private static Result wrapResult(Result result, Statement statement) {
+        return proxy(Result.class, (proxy, method, args) -> {
+            try {
+                if (method.getName().equals("forEachRemaining")) {
+                    @SuppressWarnings("unchecked")
+                    Consumer<Record> consumer = (Consumer<Record>) args[0];
+                    result.forEachRemaining(record -> {
+                        statement.row();
+                        consumer.accept(record);
+                    });
+                    return null;
+                }
+                Object value = invoke(method, result, args);
+                switch (method.getName()) {
+                    case "next", "single" -> statement.row();
+                    case "list" -> statement.rows(((List<?>) value).size());
+                    case "stream" -> {
+                        return ((Stream<?>) value).peek(record -> statement.row());
+                    }
+                    default -> {
+                    }
+                }
+                return value;
+            } finally {
+                statement.touch();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryTracker.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static final class Queries {
+        private final List<Statement> statements = new ArrayList<>();
+
+        private Statement add(String cypher, Object parameters) {
+            Statement statement = new Statement(cypher, parameters);
+            statements.add(statement);
+            return statement;
+        }
+
+        // The statements of both, such as of the dispatches before and after an asynchronous request got its result
+        Queries merge(Queries other) {
+            Queries merged = new Queries();
+            merged.statements.addAll(statements);
+            merged.statements.addAll(other.statements);
+            return merged;
+        }
+
+        public List<Statement> statements() {
+            return statements;
+        }
+
+        public int count() {
+            return statements.size();
+        }
+
+        public long rows() {
+            long rows = 0;
+            for (Statement statement : statements) {
+                rows += statement.rows;
+            }
+            return rows;
+        }
+
+        public long nanos() {
+            long nanos = 0;
+            for (Statement statement : statements) {
+                nanos += statement.nanos();
+            }
+            return nanos;
+        }
+
+        // The value of a Server-Timing header with the time spent in the database and the statements and rows
+        public String serverTiming() {
+            return String.format(Locale.ROOT, "db;desc=\"Neo4j\";dur=%.3f, db-statements;desc=\"%d\", db-rows;desc=\"%d\"",
+                    nanos() / 1_000_000.0, count(), rows());
+        }
+    }
+
+    public static final class Statement {
+        private final String cypher;
+        // The parameters as they were passed to the driver, which are only converted when they are asked for
+        private final Object parameters;
+        private final long start = System.nanoTime();
+        private long end = start;
+        private long rows;
+
+        private Statement(String cypher, Object parameters) {
+            this.cypher = cypher;
+            this.parameters = parameters;
+        }
+
+        public String cypher() {
+            return cypher;
+        }
+
+        public Map<String, Object> parameters() {
+            if (parameters instanceof Query query)
+                return query.parameters().asMap();
+            if (parameters instanceof Record record)
+                return record.asMap();
+            return parameters != null ? Values.value(parameters).asMap() : Map.of();
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public long nanos() {
+            return end - start;
+        }
+
+        private void row() {
+            rows++;
+            touch();
+        }
+
+        private void rows(int count) {
+            rows += count;
+        }
+
+        private void touch() {
+            end = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.services.RegistryArchiveService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Exports or imports a registry archive when the application is started with one of the archive properties set,
+// and then shuts the application down
+@Component
+@Slf4j
+public class RegistryArchiveRunner implements ApplicationRunner {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private RegistryArchiveService archiveService;
+    private ConfigurableApplicationContext context;
+
+    @Value("${org.iala_aism.mrr.archive.export:}")
+    private String exportFile;
+
+    @Value("${org.iala_aism.mrr.archive.import:}")
+    private String importFile;
+
+    @Autowired
+    public void setArchiveService(RegistryArchiveService archiveService) {
+        this.archiveService = archiveService;
+    }
+
+    @Autowired
+    public void setContext(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (exportFile.isBlank() && importFile.isBlank())
+            return;
+
+        int exitCode = 0;
+        try {
+            if (!exportFile.isBlank()) {
+                log.info("Exporting the registry to {}", exportFile);
+                try (OutputStream out = openOutput(Path.of(exportFile))) {
+                    archiveService.exportArchive(out);
+                }
+            } else {
+                log.info("Importing the registry from {}", importFile);
+                try (InputStream in = openInput(Path.of(importFile))) {
+                    archiveService.importArchive(in);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("The registry archive could not be processed", e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    // Archives are compressed when the name of the file ends with .gz
+    private static OutputStream openOutput(Path path) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+        return isCompressed(path) ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+
+    private static InputStream openInput(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        return isCompressed(path) ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    private static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+}
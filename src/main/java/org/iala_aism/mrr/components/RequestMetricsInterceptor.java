@@ -0,0 +1,151 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Times every controller operation by its outcome and accounts for the Neo4j statements it runs. Operations are named
+// after their controller method and outcomes are the status codes that the registry uses, with any other status
+// reduced to its class, so that the number of series stays bounded. Operations that take longer than the slow request
+// threshold are logged as a JSON object with the Cypher text of their statements.
+@Slf4j
+public class RequestMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+    // The statements of the request, which are complete once the request has completed
+    public static final String QUERIES = RequestMetricsInterceptor.class.getName() + ".queries";
+
+    private static final String START = RequestMetricsInterceptor.class.getName() + ".start";
+    private static final Set<Integer> OUTCOMES = Set.of(200, 201, 202, 204, 303, 304, 400, 401, 403, 404, 409, 412, 429);
+    // Enough to recognize an N+1 pattern without logging thousands of statements
+    private static final int LOGGED_STATEMENTS = 50;
+
+    private final MeterRegistry meterRegistry;
+    private final QueryTracker queryTracker;
+    private final ObjectMapper mapper;
+    private final boolean serverTiming;
+    private final Duration slowRequestThreshold;
+
+    public RequestMetricsInterceptor(MeterRegistry meterRegistry, QueryTracker queryTracker, ObjectMapper mapper,
+                                     boolean serverTiming, Duration slowRequestThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.queryTracker = queryTracker;
+        this.mapper = mapper;
+        this.serverTiming = serverTiming;
+        this.slowRequestThreshold = slowRequestThreshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod))
+            return true;
+        // Asynchronous requests are dispatched again when their result is ready and are timed from the first dispatch
+        if (request.getAttribute(START) == null)
+            request.setAttribute(START, System.nanoTime());
+        queryTracker.begin();
+        return true;
+    }
+
+    // Responses with a body get the header from the ServerTimingAdvice before the body is written, this covers the others
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        QueryTracker.Queries queries = queryTracker.current();
+        if (serverTiming && queries != null && !response.isCommitted() && !response.containsHeader(SERVER_TIMING))
+            response.setHeader(SERVER_TIMING, queries.serverTiming());
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod)
+            request.setAttribute(QUERIES, queryTracker.end());
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(handler instanceof HandlerMethod method) || !(request.getAttribute(START) instanceof Long start))
+            return;
+        long elapsed = System.nanoTime() - start;
+        QueryTracker.Queries queries = queryTracker.end();
+        if (request.getAttribute(QUERIES) instanceof QueryTracker.Queries beforeAsync)
+            queries = beforeAsync.merge(queries);
+        request.setAttribute(QUERIES, queries);
+        String operation = method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        Timer.builder("mrr.requests")
+                .description("Time taken by the operations of the registry")
+                .tags("operation", operation, "outcome", outcomeOf(status))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        // The first bucket holds the operations that ran no query at all
+        DistributionSummary.builder("mrr.requests.neo4j.queries")
+                .description("The number of Neo4j queries run by an operation of the registry")
+                .tag("operation", operation)
+                .serviceLevelObjectives(0.5, 1, 2, 3, 5, 10, 20, 50, 100)
+                .register(meterRegistry)
+                .record(queries.count());
+        if (elapsed >= slowRequestThreshold.toNanos())
+            logSlowRequest(request, operation, status, elapsed, queries);
+    }
+
+    private void logSlowRequest(HttpServletRequest request, String operation, int status, long elapsed, QueryTracker.Queries queries) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("operation", operation);
+        entry.put("method", request.getMethod());
+        entry.put("path", request.getRequestURI());
+        entry.put("status", status);
+        entry.put("durationMillis", elapsed / 1_000_000.0);
+        List<Map<String, Object>> statements = new ArrayList<>();
+        for (QueryTracker.Statement statement : queries.statements()) {
+            if (statements.size() == LOGGED_STATEMENTS)
+                break;
+            statements.add(Map.of("cypher", statement.cypher().replaceAll("\\s+", " ").trim(),
+                    "rows", statement.rows(), "millis", statement.nanos() / 1_000_000.0));
+        }
+        entry.put("statements", queries.count());
+        entry.put("rows", queries.rows());
+        entry.put("neo4jMillis", queries.nanos() / 1_000_000.0);
+        entry.put("cypher", statements);
+        try {
+            log.warn("Slow request: {}", mapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            log.warn("Slow request {} {} took {} ms", request.getMethod(), request.getRequestURI(), elapsed / 1_000_000);
+        }
+    }
+
+    private static String outcomeOf(int status) {
+        return OUTCOMES.contains(status) ? String.valueOf(status) : (status / 100) + "xx";
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.services.SchemaMigrationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Migrates the database schema before anything else runs against it
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class SchemaMigrationRunner implements ApplicationRunner {
+
+    private SchemaMigrationService migrationService;
+
+    @Value("${org.iala_aism.mrr.schema.migrate:true}")
+    private boolean migrate;
+
+    // If the schema is required the application fails to start when it cannot be migrated, such as when the data
+    // violates one of the constraints, instead of running without the constraints and indexes the queries rely on
+    @Value("${org.iala_aism.mrr.schema.required:true}")
+    private boolean required;
+
+    @Autowired
+    public void setMigrationService(SchemaMigrationService migrationService) {
+        this.migrationService = migrationService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!migrate)
+            return;
+        try {
+            int applied = migrationService.migrate();
+            log.info("The database schema is up to date, {} migrations were applied", applied);
+        } catch (RuntimeException e) {
+            if (required)
+                throw e;
+            log.warn("Could not migrate the database schema: {}", e.getMessage());
+        }
+    }
+}
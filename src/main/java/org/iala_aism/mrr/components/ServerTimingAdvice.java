@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+// Adds the database accounting of a request as a Server-Timing header. The header has to be set before the body is
+// written, after which the response is committed.
+@ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(value = "org.iala_aism.mrr.server-timing.enabled", havingValue = "true", matchIfMissing = true)
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    private QueryTracker queryTracker;
+
+    @Autowired
+    public void setQueryTracker(QueryTracker queryTracker) {
+        this.queryTracker = queryTracker;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryTracker.Queries queries = queryTracker.current();
+        if (queries != null)
+            response.getHeaders().set(RequestMetricsInterceptor.SERVER_TIMING, queries.serverTiming());
+        return body;
+    }
+}
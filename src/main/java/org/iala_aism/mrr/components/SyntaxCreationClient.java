@@ -0,0 +1,278 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.SyntaxCreationRequest;
+import org.iala_aism.mrr.model.SyntaxCreationResult;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sends syntax creation requests to the syntax service over a single long-lived WebSocket connection. Requests are
+// matched to their results by a correlation ID, so any number of them can be in flight at once. The connection is
+// opened on the first request and reopened, with a backoff, whenever it is lost.
+@Component
+@Slf4j
+public class SyntaxCreationClient {
+
+    private static final int SEND_TIME_LIMIT = 10_000;
+    private static final int SEND_BUFFER_SIZE_LIMIT = 1024 * 1024;
+    private static final long MAX_RECONNECT_DELAY = 30_000;
+
+    private final StandardWebSocketClient client = new StandardWebSocketClient();
+    private final Map<String, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "syntax-creation-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Timer> requestTimers = new HashMap<>();
+    private ObjectMapper mapper;
+
+    private CompletableFuture<WebSocketSession> connection;
+    private long reconnectDelay = 1000;
+    // No connection attempt is made before this time of System.nanoTime, so that attempts back off however they start
+    private long nextAttempt = System.nanoTime();
+    private volatile boolean closed;
+
+    @Value("${org.iala_aism.mrr.websocket-url}")
+    private String webSocketUrl;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.timeout:PT30S}")
+    private Duration timeout;
+
+    @Autowired
+    public void setMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        for (String outcome : new String[]{"ok", "error", "timeout", "failed"}) {
+            requestTimers.put(outcome, Timer.builder("mrr.syntax.service.requests")
+                    .description("Time from sending a syntax creation request to the syntax service until its result arrives")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    public CompletableFuture<SyntaxCreationResult> submit(SyntaxCreationRequest request) {
+        String correlationId = UUID.randomUUID().toString();
+        request.setCorrelationId(correlationId);
+        CompletableFuture<SyntaxCreationResult> result = new CompletableFuture<>();
+        pending.put(correlationId, new PendingRequest(request.getNamespace(), sequence.incrementAndGet(), result));
+        long start = System.nanoTime();
+        result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((r, e) -> {
+                    pending.remove(correlationId);
+                    requestTimers.get(outcomeOf(r, e)).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                });
+
+        session().thenAccept(session -> {
+            try {
+                session.sendMessage(new TextMessage(mapper.writeValueAsString(request)));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }).exceptionally(e -> {
+            result.completeExceptionally(e);
+            return null;
+        });
+        return result;
+    }
+
+    private static String outcomeOf(SyntaxCreationResult result, Throwable e) {
+        if (e != null)
+            return e instanceof TimeoutException ? "timeout" : "failed";
+        return SyntaxCreationStatus.OK.equals(result.getCode()) ? "ok" : "error";
+    }
+
+    public int pendingRequests() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closed = true;
+        reconnector.shutdownNow();
+        // An attempt that was still waiting for the reconnector will not be made anymore
+        if (connection != null && !connection.isDone())
+            connection.completeExceptionally(new IOException("The client of the syntax service is closed"));
+        if (connection != null && connection.isDone() && !connection.isCompletedExceptionally()) {
+            try {
+                connection.join().close(CloseStatus.GOING_AWAY);
+            } catch (IOException e) {
+                log.debug("Could not close the connection to the syntax service: {}", e.getMessage());
+            }
+        }
+    }
+
+    // The open connection, or the one being opened. A new connection is opened by the reconnector once the backoff
+    // after the previous attempt has passed.
+    private synchronized CompletableFuture<WebSocketSession> session() {
+        if (connection == null || connection.isCompletedExceptionally()
+                || (connection.isDone() && !connection.join().isOpen())) {
+            CompletableFuture<WebSocketSession> attempt = new CompletableFuture<>();
+            connection = attempt;
+            if (closed) {
+                attempt.completeExceptionally(new IOException("The client of the syntax service is closed"));
+                return attempt;
+            }
+            long delay = Math.max(0, nextAttempt - System.nanoTime());
+            reconnector.schedule(() -> connect(attempt), delay, TimeUnit.NANOSECONDS);
+        }
+        return connection;
+    }
+
+    private void connect(CompletableFuture<WebSocketSession> attempt) {
+        log.debug("Connecting to the syntax service at {}", webSocketUrl);
+        client.execute(new Handler(attempt), webSocketUrl)
+                .thenApply(session -> (WebSocketSession) new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, SEND_BUFFER_SIZE_LIMIT))
+                .whenComplete((session, e) -> {
+                    if (e != null) {
+                        log.warn("Could not connect to the syntax service at {}: {}", webSocketUrl, e.getMessage());
+                        backOff();
+                        // Decided before the requests waiting for the connection fail and are no longer pending
+                        boolean reconnect = !pending.isEmpty();
+                        attempt.completeExceptionally(e);
+                        if (reconnect)
+                            scheduleReconnect();
+                    } else {
+                        log.info("Connected to the syntax service at {}", webSocketUrl);
+                        synchronized (this) {
+                            reconnectDelay = 1000;
+                        }
+                        if (!attempt.complete(session))
+                            closeQuietly(session);
+                    }
+                });
+    }
+
+    // The client was closed while the connection was being opened
+    private void closeQuietly(WebSocketSession session) {
+        try {
+            session.close(CloseStatus.GOING_AWAY);
+        } catch (IOException e) {
+            log.debug("Could not close the connection to the syntax service: {}", e.getMessage());
+        }
+    }
+
+    // The session may still count as open while it is being closed, or the attempt that opened it may not even have
+    // completed yet, so the next request must not be sent over it
+    private synchronized void forget(CompletableFuture<WebSocketSession> attempt) {
+        if (connection == attempt)
+            connection = null;
+        backOff();
+    }
+
+    private synchronized void backOff() {
+        nextAttempt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reconnectDelay);
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+    }
+
+    // Reconnects in the background after requests were lost with the connection or could not be sent, so that their
+    // retries do not wait for the connection to be opened when the service comes back
+    private void scheduleReconnect() {
+        if (!closed)
+            session();
+    }
+
+    private void handleResult(String json) throws IOException {
+        SyntaxCreationResult result = mapper.readValue(json, SyntaxCreationResult.class);
+        PendingRequest request;
+        if (result.getCorrelationId() != null) {
+            request = pending.remove(result.getCorrelationId());
+        } else {
+            // A service that does not echo correlation IDs answers in order, so the result is for the oldest request
+            request = pending.entrySet().stream()
+                    .filter(entry -> entry.getValue().namespace().equals(result.getNamespace()))
+                    .min(Comparator.comparingLong(entry -> entry.getValue().sequence()))
+                    .map(entry -> pending.remove(entry.getKey()))
+                    .orElse(null);
+        }
+        if (request == null) {
+            log.warn("Received a syntax creation result for namespace \"{}\" that no request is waiting for", result.getNamespace());
+            return;
+        }
+        request.result().complete(result);
+    }
+
+    private record PendingRequest(String namespace, long sequence, CompletableFuture<SyntaxCreationResult> result) {
+    }
+
+    private class Handler extends TextWebSocketHandler {
+
+        private final CompletableFuture<WebSocketSession> attempt;
+
+        Handler(CompletableFuture<WebSocketSession> attempt) {
+            this.attempt = attempt;
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+            handleResult(message.getPayload());
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            if (closed)
+                return;
+            log.warn("The connection to the syntax service was closed with status code {}", status.getCode());
+            forget(attempt);
+            // The results of the requests sent over the connection will never arrive. They are taken before any of them
+            // fails, as a failed request may be retried right away, and that retry waits for the next connection.
+            List<PendingRequest> lost = List.copyOf(pending.values());
+            if (!lost.isEmpty())
+                scheduleReconnect();
+            IOException cause = new IOException("The connection to the syntax service was lost");
+            lost.forEach(request -> request.result().completeExceptionally(cause));
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) {
+            log.error("Transport error on the connection to the syntax service: {}", exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// How long clients may use registry responses without revalidating them. A max age of zero means that they always
+// have to revalidate, which is cheap as the responses carry an ETag.
+@Getter
+@Setter
+@Component
+// The prefix has to be in the canonical form, which still binds the org.iala_aism.mrr.http-cache properties
+@ConfigurationProperties(prefix = "org.iala-aism.mrr.http-cache")
+public class HttpCacheProperties {
+
+    // Used for MRNs that are not under any of the configured namespaces
+    private Duration maxAge = Duration.ZERO;
+
+    private List<NamespacePolicy> namespaces = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class NamespacePolicy {
+        private String namespace;
+        private Duration maxAge;
+    }
+}
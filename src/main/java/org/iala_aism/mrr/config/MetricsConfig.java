@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.iala_aism.mrr.components.QueryTracker;
+import org.iala_aism.mrr.components.RequestMetricsInterceptor;
+import org.neo4j.driver.Driver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Value("${org.iala_aism.mrr.server-timing.enabled:true}")
+    private boolean serverTiming;
+
+    @Value("${org.iala_aism.mrr.slow-request.threshold:PT1S}")
+    private Duration slowRequestThreshold;
+
+    @Bean
+    public static QueryTracker queryTracker() {
+        return new QueryTracker();
+    }
+
+    @Bean
+    public static BeanPostProcessor queryTrackingDriverPostProcessor(QueryTracker queryTracker) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof Driver driver ? queryTracker.wrap(driver) : bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public WebMvcConfigurer requestMetricsConfigurer(MeterRegistry meterRegistry, QueryTracker queryTracker, ObjectMapper mapper) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new RequestMetricsInterceptor(meterRegistry, queryTracker, mapper,
+                        serverTiming, slowRequestThreshold));
+            }
+        };
+    }
+}
@@ -16,10 +16,14 @@
 
 package org.iala_aism.mrr.config;
 
+import org.iala_aism.mrr.services.SharedCacheService;
+import org.iala_aism.mrr.services.SyntaxCreationStatusService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
 public class RedisConfig {
@@ -30,4 +34,15 @@ public class RedisConfig {
         redisTemplate.setConnectionFactory(jedisConnectionFactory);
         return redisTemplate;
     }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(JedisConnectionFactory jedisConnectionFactory,
+                                                                       SharedCacheService sharedCacheService,
+                                                                       SyntaxCreationStatusService syntaxCreationStatusService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(jedisConnectionFactory);
+        container.addMessageListener(sharedCacheService, new ChannelTopic(SharedCacheService.CHANNEL));
+        container.addMessageListener(syntaxCreationStatusService, new ChannelTopic(SyntaxCreationStatusService.CHANNEL));
+        return container;
+    }
 }
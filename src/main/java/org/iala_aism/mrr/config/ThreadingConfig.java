@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+// Most of the work of the registry is waiting for Neo4j and Redis. With virtual threads enabled, requests and the
+// lookups they fan out to run on virtual threads, so that waiting requests do not hold on to platform threads and the
+// number of requests in flight is no longer bounded by the size of the Tomcat thread pool.
+@Configuration
+@Slf4j
+public class ThreadingConfig {
+
+    public static final String VIRTUAL_THREADS_ENABLED = "org.iala_aism.mrr.virtual-threads.enabled";
+
+    @Bean
+    @ConditionalOnProperty(VIRTUAL_THREADS_ENABLED)
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
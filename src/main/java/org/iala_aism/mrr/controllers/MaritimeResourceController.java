@@ -22,15 +22,19 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.iala_aism.mrr.exceptions.MrrRestException;
 import org.iala_aism.mrr.model.MaritimeResourceEntity;
 import org.iala_aism.mrr.model.MrrEntity;
-import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.iala_aism.mrr.model.dto.CursorPage;
 import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.services.MaritimeResourceReadService;
+import org.iala_aism.mrr.services.MaritimeResourceRegistrationService;
 import org.iala_aism.mrr.services.MaritimeResourceService;
 import org.iala_aism.mrr.services.MrrService;
-import org.iala_aism.mrr.services.NamespaceService;
-import org.iala_aism.mrr.services.NamespaceSyntaxService;
 import org.iala_aism.mrr.utils.AccessControlUtil;
+import org.iala_aism.mrr.utils.HttpCachePolicy;
+import org.iala_aism.mrr.utils.KeysetCursor;
+import org.iala_aism.mrr.utils.SemverRange;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
@@ -45,25 +49,31 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
 @EnableMethodSecurity
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/resource")
 public class MaritimeResourceController {
 
     public static final String COULD_NOT_BE_FOUND = "The requested resource could not be found";
-    private final Pattern versionPattern = Pattern.compile("^(0|[1-9]\\d*)\\.(0|[1-9]\\d*)\\.(0|[1-9]\\d*)$"); // Regex for X.Y.Z version format
     private MaritimeResourceService resourceService;
-    private NamespaceService namespaceService;
-    private NamespaceSyntaxService namespaceSyntaxService;
+    private MaritimeResourceReadService readService;
+    private MaritimeResourceRegistrationService registrationService;
     private MrrService mrrService;
     private AccessControlUtil accessControlUtil;
+    private HttpCachePolicy httpCachePolicy;
 
     @Autowired
     public void setResourceService(MaritimeResourceService resourceService) {
@@ -71,13 +81,13 @@ public class MaritimeResourceController {
     }
 
     @Autowired
-    public void setNamespaceService(NamespaceService namespaceService) {
-        this.namespaceService = namespaceService;
+    public void setReadService(MaritimeResourceReadService readService) {
+        this.readService = readService;
     }
 
     @Autowired
-    public void setNamespaceSyntaxService(NamespaceSyntaxService namespaceSyntaxService) {
-        this.namespaceSyntaxService = namespaceSyntaxService;
+    public void setRegistrationService(MaritimeResourceRegistrationService registrationService) {
+        this.registrationService = registrationService;
     }
 
     @Autowired
@@ -90,17 +100,36 @@ public class MaritimeResourceController {
         this.accessControlUtil = accessControlUtil;
     }
 
+    @Autowired
+    public void setHttpCachePolicy(HttpCachePolicy httpCachePolicy) {
+        this.httpCachePolicy = httpCachePolicy;
+    }
+
     @GetMapping(
             value = "/{mrn}",
             produces = MediaType.APPLICATION_JSON_VALUE
     )
     @Operation(
-            description = "Returns a page of all versions of the resource with the given MRN"
+            description = "Returns a page of all versions of the resource with the given MRN. " +
+                    "If a semantic version range like '>=1.2.0 <2.0.0' is given only the versions satisfying it are returned, " +
+                    "ordered from the newest to the oldest."
     )
-    public Page<MaritimeResourceDTO> getAllResourcesForMrn(@PathVariable String mrn, @ParameterObject Pageable pageable, HttpServletRequest request) throws MrrRestException {
-        Page<MaritimeResourceEntity> resourceEntities = resourceService.getAllByMrn(mrn, pageable);
+    public Page<MaritimeResourceDTO> getAllResourcesForMrn(@PathVariable String mrn, @RequestParam(required = false) String range,
+                                                           @ParameterObject Pageable pageable, HttpServletRequest request) throws MrrRestException {
+        Page<MaritimeResourceDTO> resources;
+        if (range != null) {
+            SemverRange semverRange;
+            try {
+                semverRange = SemverRange.parse(range);
+            } catch (IllegalArgumentException e) {
+                throw new MrrRestException(HttpStatus.BAD_REQUEST, e.getMessage(), request.getServletPath());
+            }
+            resources = readService.getAllByMrnInRange(mrn, semverRange, pageable);
+        } else {
+            resources = readService.getAllByMrn(mrn, pageable);
+        }
 
-        if (resourceEntities.isEmpty()) {
+        if (resources.isEmpty()) {
             Optional<MrrEntity> maybeMrr = mrrService.searchForEarlierMrr(mrn);
             if (maybeMrr.isPresent())
                 throw new MrrRestException(HttpStatus.SEE_OTHER,
@@ -108,7 +137,7 @@ public class MaritimeResourceController {
                         request.getServletPath(), maybeMrr.get().getEndpoint() + request.getServletPath());
         }
 
-        return resourceEntities.map(MaritimeResourceDTO::new);
+        return resources;
     }
 
     @GetMapping(
@@ -119,8 +148,21 @@ public class MaritimeResourceController {
             description = "Returns a page of all registered resources. Is only here for testing purposes and will be removed in the future."
     )
     public Page<MaritimeResourceDTO> getAllMaritimeResources(@ParameterObject Pageable pageable) {
-        Page<MaritimeResourceEntity> resourceEntityPage = resourceService.getAll(pageable);
-        return resourceEntityPage.map(MaritimeResourceDTO::new);
+        return readService.getAll(pageable);
+    }
+
+    @GetMapping(
+            value = "/all",
+            params = "cursor",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns a page of all registered resources ordered by MRN and version. " +
+                    "Start with an empty cursor and follow the next cursor of each page, which is also given in the Link header."
+    )
+    public ResponseEntity<CursorPage<MaritimeResourceDTO>> getAllMaritimeResourcesAfterCursor(@RequestParam String cursor, @RequestParam(defaultValue = "20") int size,
+                                                                                             HttpServletRequest request) throws MrrRestException {
+        return getResourcesAfterCursor("", cursor, size, request);
     }
 
     @GetMapping(
@@ -131,8 +173,22 @@ public class MaritimeResourceController {
             description = "Returns a page of all registered resources under the given MRN namespace."
     )
     public Page<MaritimeResourceDTO> getAllMaritimeResourcesUnderNamespace(@PathVariable String namespace, @ParameterObject Pageable pageable) {
-        Page<MaritimeResourceEntity> resourceEntityPage = resourceService.getAllStartingWithNamespace(namespace, pageable);
-        return resourceEntityPage.map(MaritimeResourceDTO::new);
+        return readService.getAllStartingWithNamespace(namespace, pageable);
+    }
+
+    @GetMapping(
+            path = "/all/{namespace}",
+            params = "cursor",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns a page of all registered resources under the given MRN namespace ordered by MRN and version. " +
+                    "Start with an empty cursor and follow the next cursor of each page, which is also given in the Link header."
+    )
+    public ResponseEntity<CursorPage<MaritimeResourceDTO>> getAllMaritimeResourcesUnderNamespaceAfterCursor(@PathVariable String namespace, @RequestParam String cursor,
+                                                                                                           @RequestParam(defaultValue = "20") int size,
+                                                                                                           HttpServletRequest request) throws MrrRestException {
+        return getResourcesAfterCursor(namespace, cursor, size, request);
     }
 
     @GetMapping(
@@ -143,11 +199,11 @@ public class MaritimeResourceController {
             description = "Returns the resource with the given MRN and version"
     )
     public ResponseEntity<MaritimeResourceDTO> getResourceByMrnAndVersion(@PathVariable String mrn, @PathVariable String version, HttpServletRequest request) throws MrrRestException {
-        Optional<MaritimeResourceEntity> maybeResource = resourceService.getByMrnAndVersion(mrn, version);
+        Optional<MaritimeResourceDTO> maybeResource = readService.getByMrnAndVersion(mrn, version);
 
         if (maybeResource.isEmpty())
             throw handleOptionalResource(mrn, request);
-        return new ResponseEntity<>(new MaritimeResourceDTO(maybeResource.get()), HttpStatus.OK);
+        return cachedResponse(maybeResource.get());
     }
 
     @GetMapping(
@@ -158,11 +214,11 @@ public class MaritimeResourceController {
             description = "Returns the latest version of the resource with the given MRN"
     )
     public ResponseEntity<MaritimeResourceDTO> getLatestVersionOfResourceByMrn(@PathVariable String mrn, HttpServletRequest request) throws MrrRestException {
-        Optional<MaritimeResourceEntity> maybeResource = resourceService.getLatestByMrn(mrn);
+        Optional<MaritimeResourceDTO> maybeResource = readService.getLatestByMrn(mrn);
 
         if (maybeResource.isEmpty())
             throw handleOptionalResource(mrn, request);
-        return new ResponseEntity<>(new MaritimeResourceDTO(maybeResource.get()), HttpStatus.OK);
+        return cachedResponse(maybeResource.get());
     }
 
     @GetMapping(
@@ -173,12 +229,12 @@ public class MaritimeResourceController {
             description = "Returns the resource with the given ID"
     )
     public ResponseEntity<MaritimeResourceDTO> getResourceById(@PathVariable String resourceId, HttpServletRequest request) throws MrrRestException {
-        Optional<MaritimeResourceEntity> resourceEntityOptional = resourceService.getById(resourceId);
-        MaritimeResourceEntity resourceEntity = resourceEntityOptional.orElseThrow(
+        Optional<MaritimeResourceDTO> resourceOptional = readService.getById(resourceId);
+        MaritimeResourceDTO resource = resourceOptional.orElseThrow(
                 () -> new MrrRestException(HttpStatus.NOT_FOUND, COULD_NOT_BE_FOUND,
                         request.getServletPath())
         );
-        return new ResponseEntity<>(new MaritimeResourceDTO(resourceEntity), HttpStatus.OK);
+        return cachedResponse(resource);
     }
 
     @PostMapping(
@@ -200,6 +256,22 @@ public class MaritimeResourceController {
         }
     }
 
+    @PostMapping(
+            value = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    @Operation(
+            description = "Creates the resources given as a JSON array or as newline delimited JSON. " +
+                    "The result of each resource is streamed back as a line of JSON in the order the resources were given."
+    )
+    public ResponseEntity<StreamingResponseBody> createResources(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        String path = request.getServletPath();
+        StreamingResponseBody results = out -> registrationService.registerAll(body, out, path);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(results);
+    }
+
     @DeleteMapping(
             value = "/{mrn}/{version}"
     )
@@ -208,7 +280,7 @@ public class MaritimeResourceController {
     )
     @PreAuthorize("@accessControlUtil.canManageNamespace(#mrn)")
     public void deleteResourceByMrnAndVersion(@PathVariable String mrn, @PathVariable String version, HttpServletRequest request) throws MrrRestException {
-        Optional<MaritimeResourceEntity> maybeResource = resourceService.getByMrnAndVersion(mrn, version);
+        Optional<MaritimeResourceDTO> maybeResource = readService.getByMrnAndVersion(mrn, version);
         if (maybeResource.isEmpty())
             throw new MrrRestException(HttpStatus.NOT_FOUND, COULD_NOT_BE_FOUND, request.getServletPath());
         resourceService.deleteByMrnAndVersion(mrn, version);
@@ -221,7 +293,7 @@ public class MaritimeResourceController {
             description = "Deletes the resource with the given ID"
     )
     public void deleteResourceById(@PathVariable String resourceId, HttpServletRequest request, HttpServletResponse response) throws MrrRestException {
-        Optional<MaritimeResourceEntity> maybeResource = resourceService.getById(resourceId);
+        Optional<MaritimeResourceDTO> maybeResource = readService.getById(resourceId);
         if (maybeResource.isEmpty())
             throw new MrrRestException(HttpStatus.NOT_FOUND, COULD_NOT_BE_FOUND, request.getServletPath());
         if (!accessControlUtil.canManageNamespace(maybeResource.get().getMrn())) {
@@ -231,6 +303,12 @@ public class MaritimeResourceController {
         resourceService.deleteById(resourceId);
     }
 
+    private ResponseEntity<MaritimeResourceDTO> cachedResponse(MaritimeResourceDTO resource) {
+        return httpCachePolicy.ok(resource.getMrn(), resource, resource.getLastModified(), resource.getId(),
+                resource.getMrn(), resource.getVersion(), resource.getLocation(), resource.getName(),
+                resource.getDescription(), String.valueOf(resource.getLastModified()));
+    }
+
     private MrrRestException handleOptionalResource(@PathVariable String mrn, HttpServletRequest request) {
         Optional<MrrEntity> maybeMrr = mrrService.searchForEarlierMrr(mrn);
         return maybeMrr.map(mrrEntity -> new MrrRestException(HttpStatus.SEE_OTHER,
@@ -240,37 +318,23 @@ public class MaritimeResourceController {
                         request.getServletPath()));
     }
 
-    private MaritimeResourceEntity handleCreation(MaritimeResourceDTO maritimeResourceDTO, HttpServletRequest request) throws URISyntaxException, MrrRestException {
-        MaritimeResourceEntity entity = new MaritimeResourceEntity(maritimeResourceDTO.getMrn(), maritimeResourceDTO.getVersion(),
-                maritimeResourceDTO.getLocation(), maritimeResourceDTO.getName(), maritimeResourceDTO.getDescription());
-
-        Optional<MrrEntity> maybeMrr = mrrService.searchForEarlierMrr(maritimeResourceDTO.getMrn());
-        if (maybeMrr.isPresent()) {
+    private ResponseEntity<CursorPage<MaritimeResourceDTO>> getResourcesAfterCursor(String namespace, String cursor, int size,
+                                                                            HttpServletRequest request) throws MrrRestException {
+        if (size < 1 || size > KeysetCursor.MAX_PAGE_SIZE)
             throw new MrrRestException(HttpStatus.BAD_REQUEST,
-                    String.format("An MRR for the namespace %s exists. Please register your resource there",
-                            maybeMrr.get().getMrnNamespace()), request.getServletPath());
-        }
-
-        Optional<MaritimeResourceEntity> maybeResource = resourceService.getByMrnAndVersion(entity.getMrn(), entity.getVersion());
-        if (maybeResource.isPresent()) {
-            throw new MrrRestException(HttpStatus.CONFLICT, "A resource with the given combination of MRN and version already exists",
-                    request.getServletPath());
+                    "The page size must be between 1 and " + KeysetCursor.MAX_PAGE_SIZE, request.getServletPath());
+        List<String> after;
+        try {
+            after = KeysetCursor.decode(cursor, 2);
+        } catch (IllegalArgumentException e) {
+            throw new MrrRestException(HttpStatus.BAD_REQUEST, e.getMessage(), request.getServletPath());
         }
+        List<MaritimeResourceDTO> resources = readService.getAllStartingWithNamespaceAfter(namespace, after.get(0), after.get(1), size + 1);
+        return KeysetCursor.toResponse(CursorPage.of(resources, size,
+                r -> KeysetCursor.encode(r.getMrn(), r.getVersion()), Function.identity()));
+    }
 
-        if (!versionPattern.matcher(maritimeResourceDTO.getVersion()).matches())
-            throw new MrrRestException(HttpStatus.BAD_REQUEST, "The version of the resource does not match the format X.Y.Z", request.getServletPath());
-
-        NamespaceSyntax syntax = namespaceSyntaxService.findNamespaceSyntaxForMrn(entity.getMrn());
-        if (syntax == null) {
-            throw new URISyntaxException("A syntax definition could not be found for the MRN of the resource", entity.getMrn());
-        }
-        if (Pattern.matches("^" + syntax.getRegex() + "$", entity.getMrn())) {
-            entity.setNamespace(namespaceService.createNamespace(entity.getMrn()));
-            return resourceService.save(entity);
-        } else {
-            throw new URISyntaxException(entity.getMrn(),
-                    String.format("The MRN of the resource does not follow the syntax definition for %s",
-                            syntax.getNamespace().getMrnNamespace()));
-        }
+    private MaritimeResourceEntity handleCreation(MaritimeResourceDTO maritimeResourceDTO, HttpServletRequest request) throws URISyntaxException, MrrRestException {
+        return registrationService.register(maritimeResourceDTO, request.getServletPath());
     }
 }
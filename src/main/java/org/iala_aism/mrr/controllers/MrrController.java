@@ -19,13 +19,12 @@ package org.iala_aism.mrr.controllers;
 import io.swagger.v3.oas.annotations.Operation;
 import org.iala_aism.mrr.exceptions.MrrRestException;
 import org.iala_aism.mrr.model.MrrEntity;
-import org.iala_aism.mrr.model.NamespaceEntity;
 import org.iala_aism.mrr.model.Owner;
 import org.iala_aism.mrr.model.dto.MrrDTO;
 import org.iala_aism.mrr.services.MrrService;
-import org.iala_aism.mrr.services.NamespaceService;
 import org.iala_aism.mrr.utils.AccessControlUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -47,11 +46,11 @@ import java.util.Optional;
 
 @EnableMethodSecurity
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/mrr")
 public class MrrController {
     public static final String NAMESPACE_COULD_NOT_BE_FOUND = "An MRR with the given MRN namespace could not be found";
     private MrrService mrrService;
-    private NamespaceService namespaceService;
     private AccessControlUtil accessControlUtil;
 
     @Autowired
@@ -59,11 +58,6 @@ public class MrrController {
         this.mrrService = mrrService;
     }
 
-    @Autowired
-    public void setNamespaceService(NamespaceService namespaceService) {
-        this.namespaceService = namespaceService;
-    }
-
     @Autowired
     public void setAccessControlUtil(AccessControlUtil accessControlUtil) {
         this.accessControlUtil = accessControlUtil;
@@ -126,8 +120,7 @@ public class MrrController {
         MrrEntity mrr = maybeMrr.orElseThrow(() -> new MrrRestException(HttpStatus.NOT_FOUND, NAMESPACE_COULD_NOT_BE_FOUND, request.getServletPath()));
         // TODO right now it only makes sense to update the endpoint, but in the future it might make sense
         // to also update other attributes
-        mrr.setEndpoint(mrrDTO.getEndpoint());
-        mrrService.save(mrr);
+        mrrService.updateEndpoint(mrr.getId(), mrrDTO.getEndpoint());
     }
 
     @PutMapping(
@@ -146,8 +139,7 @@ public class MrrController {
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
             return;
         }
-        mrr.setEndpoint(mrrDTO.getEndpoint());
-        mrrService.save(mrr);
+        mrrService.updateEndpoint(mrr.getId(), mrrDTO.getEndpoint());
     }
 
     @DeleteMapping(
@@ -182,18 +174,13 @@ public class MrrController {
     }
 
     private MrrEntity handleCreation(MrrDTO mrrDTO, HttpServletRequest request) throws MrrRestException {
-        NamespaceEntity namespace = namespaceService.getNamespaceByMrn(mrrDTO.getMrnNamespace());
-        MrrEntity mrrEntity = mrrService.searchForLaterMrr(namespace);
-        if (mrrEntity != null) {
+        Optional<MrrEntity> laterMrr = mrrService.searchForLaterMrr(mrrDTO.getMrnNamespace());
+        if (laterMrr.isPresent()) {
             throw new MrrRestException(HttpStatus.BAD_REQUEST,
-                    "An MRR entry already exists for this or a later MRN namespace: " + mrrEntity.getMrnNamespace(),
+                    "An MRR entry already exists for this or a later MRN namespace: " + laterMrr.get().getMrnNamespace(),
                     request.getServletPath());
         }
-        if (namespace == null) {
-            namespace = namespaceService.createNamespace(mrrDTO.getMrnNamespace());
-        }
         MrrEntity newMrr = new MrrEntity(mrrDTO.getMrnNamespace(), mrrDTO.getEndpoint(), new Owner(mrrDTO.getOwner()));
-        newMrr.setNamespace(namespace);
-        return mrrService.save(newMrr);
+        return mrrService.create(newMrr);
     }
 }
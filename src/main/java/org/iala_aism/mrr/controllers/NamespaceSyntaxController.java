@@ -16,24 +16,28 @@
 
 package org.iala_aism.mrr.controllers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
-import org.iala_aism.mrr.components.MrrWebSocketHandler;
 import org.iala_aism.mrr.exceptions.MrrRestException;
 import org.iala_aism.mrr.model.MrrEntity;
 import org.iala_aism.mrr.model.NamespaceSyntax;
 import org.iala_aism.mrr.model.SyntaxCreationResult;
 import org.iala_aism.mrr.model.SyntaxCreationResultRedis;
+import org.iala_aism.mrr.model.dto.CursorPage;
 import org.iala_aism.mrr.model.dto.NamespaceSyntaxDTO;
+import org.iala_aism.mrr.model.dto.OwnerDTO;
 import org.iala_aism.mrr.model.dto.SyntaxCreationDTO;
 import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
 import org.iala_aism.mrr.services.MrrService;
 import org.iala_aism.mrr.services.NamespaceSyntaxService;
+import org.iala_aism.mrr.services.SyntaxCreationService;
 import org.iala_aism.mrr.services.SyntaxCreationStatusService;
 import org.iala_aism.mrr.utils.AccessControlUtil;
+import org.iala_aism.mrr.utils.HttpCachePolicy;
+import org.iala_aism.mrr.utils.KeysetCursor;
 import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
@@ -45,26 +49,38 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.socket.client.WebSocketConnectionManager;
-import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/syntax")
 public class NamespaceSyntaxController {
 
+    private static final String STATUS_EVENT = "status";
+
     private NamespaceSyntaxService namespaceSyntaxService;
     private MrrService mrrService;
     private SyntaxCreationStatusService creationStatusService;
-    private ObjectMapper mapper;
+    private SyntaxCreationService syntaxCreationService;
 
     private AccessControlUtil accessControlUtil;
+    private HttpCachePolicy httpCachePolicy;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.status.max-wait:PT60S}")
+    private Duration maxStatusWait;
 
-    @Value("${org.iala_aism.mrr.websocket-url}")
-    private String webSocketUrl;
+    @Value("${org.iala_aism.mrr.syntax-creation.status.max-stream:PT5M}")
+    private Duration maxStatusStream;
 
     @Autowired
     public void setNamespaceSyntaxService(NamespaceSyntaxService namespaceSyntaxService) {
@@ -82,8 +98,8 @@ public class NamespaceSyntaxController {
     }
 
     @Autowired
-    public void setMapper(ObjectMapper mapper) {
-        this.mapper = mapper;
+    public void setSyntaxCreationService(SyntaxCreationService syntaxCreationService) {
+        this.syntaxCreationService = syntaxCreationService;
     }
 
     @Autowired
@@ -91,6 +107,11 @@ public class NamespaceSyntaxController {
         this.accessControlUtil = accessControlUtil;
     }
 
+    @Autowired
+    public void setHttpCachePolicy(HttpCachePolicy httpCachePolicy) {
+        this.httpCachePolicy = httpCachePolicy;
+    }
+
     @GetMapping(
             path = "/{mrn}",
             produces = MediaType.APPLICATION_JSON_VALUE
@@ -99,13 +120,11 @@ public class NamespaceSyntaxController {
             description = "Returns the syntax definition that applies to the given MRN"
     )
     public ResponseEntity<NamespaceSyntaxDTO> getNamespaceSyntaxForMrn(@PathVariable String mrn, HttpServletRequest request) throws MrrRestException {
-        // Start by checking if there is a syntax for the specific MRN
-        NamespaceSyntax syntax = namespaceSyntaxService.getNamespaceSyntax(mrn);
-        if (syntax != null) {
-            NamespaceSyntaxDTO syntaxDTO = new NamespaceSyntaxDTO(syntax);
-            return new ResponseEntity<>(syntaxDTO, HttpStatus.OK);
-        }
-        // If there isn't check if there is another MRR for the MRN
+        // The syntax for the specific MRN or else the nearest one up the tree
+        Optional<NamespaceSyntaxDTO> syntax = namespaceSyntaxService.findNearestSyntax(mrn);
+        if (syntax.isPresent() && syntax.get().getMrnNamespace().equals(mrn))
+            return cachedResponse(mrn, syntax.get());
+        // If there isn't one for the specific MRN check if there is another MRR for the MRN
         Optional<MrrEntity> maybeMrr = mrrService.searchForEarlierMrr(mrn);
         if (maybeMrr.isPresent()) {
             MrrEntity mrr = maybeMrr.get();
@@ -113,12 +132,8 @@ public class NamespaceSyntaxController {
                     "Please repeat your query in the MRR for the namespace " + mrr.getMrnNamespace(),
                     request.getServletPath(), mrr.getEndpoint() + request.getServletPath());
         }
-        // If none of the above succeed we traverse up the tree and return the result if we find a syntax
-        syntax = namespaceSyntaxService.findNamespaceSyntaxForMrn(mrn);
-        if (syntax != null) {
-            NamespaceSyntaxDTO syntaxDTO = new NamespaceSyntaxDTO(syntax);
-            return new ResponseEntity<>(syntaxDTO, HttpStatus.OK);
-        }
+        if (syntax.isPresent())
+            return cachedResponse(mrn, syntax.get());
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
 
@@ -134,6 +149,20 @@ public class NamespaceSyntaxController {
         return syntaxPage.map(NamespaceSyntaxDTO::new);
     }
 
+    @GetMapping(
+            path = "/all",
+            params = "cursor",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns a page of all registered syntax definitions ordered by namespace. " +
+                    "Start with an empty cursor and follow the next cursor of each page, which is also given in the Link header."
+    )
+    public ResponseEntity<CursorPage<NamespaceSyntaxDTO>> getAllNamespaceSyntaxesAfterCursor(@RequestParam String cursor, @RequestParam(defaultValue = "20") int size,
+                                                                                            HttpServletRequest request) throws MrrRestException {
+        return getSyntaxesAfterCursor("", cursor, size, request);
+    }
+
     @GetMapping(
             path = "/all/{namespace}",
             produces = MediaType.APPLICATION_JSON_VALUE
@@ -146,25 +175,31 @@ public class NamespaceSyntaxController {
         return syntaxPage.map(NamespaceSyntaxDTO::new);
     }
 
+    @GetMapping(
+            path = "/all/{namespace}",
+            params = "cursor",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns a page of all syntax definitions that are registered under the given MRN namespace ordered by namespace. " +
+                    "Start with an empty cursor and follow the next cursor of each page, which is also given in the Link header."
+    )
+    public ResponseEntity<CursorPage<NamespaceSyntaxDTO>> getAllNamespaceSyntaxesUnderNamespaceAfterCursor(@PathVariable String namespace, @RequestParam String cursor,
+                                                                                                          @RequestParam(defaultValue = "20") int size,
+                                                                                                          HttpServletRequest request) throws MrrRestException {
+        return getSyntaxesAfterCursor(namespace, cursor, size, request);
+    }
+
     @PostMapping(
             path = "/"
     )
     @Operation(
-            description = "Creates a new MRN namespace syntax and returns an ID that can be used to retrieve the status of the creation"
+            description = "Creates a new MRN namespace syntax and returns an ID that can be used to retrieve the status of the creation. " +
+                    "Responds with 429 if too many creations are waiting"
     )
     @PreAuthorize("@accessControlUtil.canManageNamespace(#syntaxCreationDTO.namespace)")
-    public ResponseEntity<String> createNamespaceSyntax(@RequestBody SyntaxCreationDTO syntaxCreationDTO) {
-        SyntaxCreationResultRedis tmpResult = new SyntaxCreationResultRedis();
-        tmpResult.setCode(SyntaxCreationStatus.CREATING);
-        tmpResult.setNamespace(syntaxCreationDTO.getNamespace());
-        SyntaxCreationResultRedis result = creationStatusService.save(tmpResult);
-        WebSocketConnectionManager connectionManager = new WebSocketConnectionManager(
-                new StandardWebSocketClient(),
-                new MrrWebSocketHandler(syntaxCreationDTO, creationStatusService, result, mapper),
-                webSocketUrl
-        );
-        connectionManager.start();
-        return ResponseEntity.accepted().body(tmpResult.getId());
+    public ResponseEntity<String> createNamespaceSyntax(@RequestBody SyntaxCreationDTO syntaxCreationDTO, HttpServletRequest request) throws MrrRestException {
+        return ResponseEntity.accepted().body(syntaxCreationService.create(syntaxCreationDTO, request.getServletPath()));
     }
 
     @GetMapping(
@@ -175,6 +210,72 @@ public class NamespaceSyntaxController {
             description = "Returns the creation status for the given ID"
     )
     public ResponseEntity<SyntaxCreationResult> getSyntaxCreationStatus(@PathVariable String creationId, HttpServletRequest request) throws MrrRestException {
+        return new ResponseEntity<>(getAccessibleStatus(creationId, request), HttpStatus.OK);
+    }
+
+    @GetMapping(
+            value = "/status/{creationId}",
+            params = "wait",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns the creation status for the given ID once the creation has finished, or the current status " +
+                    "if it has not finished within the given number of seconds"
+    )
+    public DeferredResult<ResponseEntity<SyntaxCreationResult>> awaitSyntaxCreationStatus(@PathVariable String creationId, @RequestParam int wait,
+                                                                                         HttpServletRequest request) throws MrrRestException {
+        SyntaxCreationResult current = getAccessibleStatus(creationId, request);
+        long timeout = Math.min(wait, maxStatusWait.toSeconds()) * 1000;
+        DeferredResult<ResponseEntity<SyntaxCreationResult>> result = new DeferredResult<>(Math.max(timeout, 1),
+                () -> new ResponseEntity<>(creationStatusService.getById(creationId).map(SyntaxCreationResult.class::cast).orElse(current), HttpStatus.OK));
+        if (timeout <= 0 || current.getCode() != SyntaxCreationStatus.CREATING) {
+            result.setResult(new ResponseEntity<>(current, HttpStatus.OK));
+            return result;
+        }
+        CompletableFuture<SyntaxCreationResultRedis> completion = creationStatusService.awaitCompletion(creationId);
+        completion.thenAccept(status -> result.setResult(new ResponseEntity<>(status != null ? status : current, HttpStatus.OK)));
+        result.onCompletion(() -> completion.cancel(false));
+        return result;
+    }
+
+    @GetMapping(
+            value = "/status/{creationId}/stream",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    @Operation(
+            description = "Streams the creation status for the given ID as server-sent events. The current status is sent " +
+                    "right away, and the stream ends with the final status once the creation has finished"
+    )
+    public SseEmitter streamSyntaxCreationStatus(@PathVariable String creationId, HttpServletRequest request) throws MrrRestException {
+        SyntaxCreationResult current = getAccessibleStatus(creationId, request);
+        SseEmitter emitter = new SseEmitter(maxStatusStream.toMillis());
+        try {
+            emitter.send(SseEmitter.event().name(STATUS_EVENT).data(current, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        if (current.getCode() != SyntaxCreationStatus.CREATING) {
+            emitter.complete();
+            return emitter;
+        }
+        CompletableFuture<SyntaxCreationResultRedis> completion = creationStatusService.awaitCompletion(creationId);
+        completion.thenAccept(status -> {
+            try {
+                if (status != null)
+                    emitter.send(SseEmitter.event().name(STATUS_EVENT).data(status, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        emitter.onCompletion(() -> completion.cancel(false));
+        emitter.onTimeout(emitter::complete);
+        return emitter;
+    }
+
+    // The access is checked up front, as waiting requests complete on other threads without the security context
+    private SyntaxCreationResult getAccessibleStatus(String creationId, HttpServletRequest request) throws MrrRestException {
         Optional<SyntaxCreationResultRedis> resultRedis = creationStatusService.getById(creationId);
         if (resultRedis.isEmpty()) {
             throw new MrrRestException(HttpStatus.NOT_FOUND,
@@ -184,6 +285,31 @@ public class NamespaceSyntaxController {
         if (!accessControlUtil.canManageNamespace(result.getNamespace())) {
             throw new MrrRestException(HttpStatus.FORBIDDEN, "You are not allowed to see this resource", request.getServletPath());
         }
-        return new ResponseEntity<>(result, HttpStatus.OK);
+        return result;
+    }
+
+    private ResponseEntity<CursorPage<NamespaceSyntaxDTO>> getSyntaxesAfterCursor(String namespace, String cursor, int size,
+                                                                          HttpServletRequest request) throws MrrRestException {
+        if (size < 1 || size > KeysetCursor.MAX_PAGE_SIZE)
+            throw new MrrRestException(HttpStatus.BAD_REQUEST,
+                    "The page size must be between 1 and " + KeysetCursor.MAX_PAGE_SIZE, request.getServletPath());
+        List<String> after;
+        try {
+            after = KeysetCursor.decode(cursor, 2);
+        } catch (IllegalArgumentException e) {
+            throw new MrrRestException(HttpStatus.BAD_REQUEST, e.getMessage(), request.getServletPath());
+        }
+        List<NamespaceSyntax> syntaxes = namespaceSyntaxService.findNamespaceSyntaxesUnderNamespaceAfter(namespace, after.get(0), after.get(1), size + 1);
+        return KeysetCursor.toResponse(CursorPage.of(syntaxes, size,
+                s -> KeysetCursor.encode(s.getMrnNamespace(), s.getId()), NamespaceSyntaxDTO::new));
+    }
+
+    private ResponseEntity<NamespaceSyntaxDTO> cachedResponse(String mrn, NamespaceSyntaxDTO syntax) {
+        OwnerDTO owner = syntax.getOwner();
+        return httpCachePolicy.ok(mrn, syntax, syntax.getLastModified(), syntax.getId(), syntax.getMrnNamespace(),
+                syntax.getAbnfSyntax(), syntax.getRegex(), String.valueOf(syntax.getLastModified()),
+                owner != null ? owner.getName() : null, owner != null ? owner.getEmail() : null,
+                owner != null ? owner.getPhone() : null, owner != null ? owner.getUrl() : null,
+                owner != null ? owner.getAddress() : null, owner != null ? owner.getCountry() : null);
     }
 }
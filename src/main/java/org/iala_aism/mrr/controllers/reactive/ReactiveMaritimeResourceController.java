@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.controllers.reactive;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.iala_aism.mrr.exceptions.MrrRestException;
+import org.iala_aism.mrr.model.MrrEntity;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.repositories.reactive.ReactiveMaritimeResourceRepository;
+import org.iala_aism.mrr.repositories.reactive.ReactiveMrrRepository;
+import org.iala_aism.mrr.services.MrrService;
+import org.iala_aism.mrr.services.NamespaceSyntaxService;
+import org.iala_aism.mrr.utils.HttpCachePolicy;
+import org.iala_aism.mrr.utils.SemanticVersion;
+import org.iala_aism.mrr.utils.SemverRange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.iala_aism.mrr.controllers.MaritimeResourceController.COULD_NOT_BE_FOUND;
+
+// The read API for resources on edge nodes, which run as reactive web applications. Listings are streamed as they are
+// read from the database instead of being paged.
+@RestController
+@RequestMapping("/resource")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveMaritimeResourceController {
+
+    private ReactiveMaritimeResourceRepository repository;
+    private ReactiveMrrRepository mrrRepository;
+    private MrrService mrrService;
+    private HttpCachePolicy httpCachePolicy;
+
+    @Autowired
+    public void setRepository(ReactiveMaritimeResourceRepository repository) {
+        this.repository = repository;
+    }
+
+    @Autowired
+    public void setMrrRepository(ReactiveMrrRepository mrrRepository) {
+        this.mrrRepository = mrrRepository;
+    }
+
+    @Autowired
+    public void setMrrService(MrrService mrrService) {
+        this.mrrService = mrrService;
+    }
+
+    @Autowired
+    public void setHttpCachePolicy(HttpCachePolicy httpCachePolicy) {
+        this.httpCachePolicy = httpCachePolicy;
+    }
+
+    @GetMapping(
+            value = "/{mrn}",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE}
+    )
+    @Operation(
+            description = "Streams all versions of the resource with the given MRN from the newest to the oldest. " +
+                    "If a semantic version range like '>=1.2.0 <2.0.0' is given only the versions satisfying it are returned."
+    )
+    public Flux<MaritimeResourceDTO> getAllResourcesForMrn(@PathVariable String mrn, @RequestParam(required = false) String range,
+                                                           ServerHttpRequest request) {
+        SemverRange semverRange;
+        try {
+            semverRange = range != null ? SemverRange.parse(range) : null;
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new MrrRestException(HttpStatus.BAD_REQUEST, e.getMessage(), pathOf(request)));
+        }
+        // A lookup is a single query here, which is as cheap as confirming a miss of the MRN filter would be
+        Flux<MaritimeResourceDTO> resources = repository.findAllVersionsByMrn(mrn).map(MaritimeResourceDTO::new)
+                .filter(resource -> semverRange == null || SemanticVersion.tryParse(resource.getVersion()).filter(semverRange::contains).isPresent());
+        return resources.switchIfEmpty(nearestMrr(mrn).flatMap(mrr -> Mono.error(seeOther(mrr, request))));
+    }
+
+    @GetMapping(
+            value = "/all",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE}
+    )
+    @Operation(
+            description = "Streams all registered resources ordered by MRN and version"
+    )
+    public Flux<MaritimeResourceDTO> getAllMaritimeResources() {
+        return repository.findAllStartingWithNamespace("").map(MaritimeResourceDTO::new);
+    }
+
+    @GetMapping(
+            path = "/all/{namespace}",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE}
+    )
+    @Operation(
+            description = "Streams all registered resources under the given MRN namespace ordered by MRN and version"
+    )
+    public Flux<MaritimeResourceDTO> getAllMaritimeResourcesUnderNamespace(@PathVariable String namespace) {
+        return repository.findAllStartingWithNamespace(namespace).map(MaritimeResourceDTO::new);
+    }
+
+    @GetMapping(
+            value = "/{mrn}/{version}",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns the resource with the given MRN and version"
+    )
+    public Mono<ResponseEntity<MaritimeResourceDTO>> getResourceByMrnAndVersion(@PathVariable String mrn, @PathVariable String version,
+                                                                               ServerHttpRequest request) {
+        Mono<MaritimeResourceDTO> resource = repository.findShallowByMrnAndVersion(mrn, version).map(MaritimeResourceDTO::new);
+        return resource.map(this::cachedResponse).switchIfEmpty(notFound(mrn, request));
+    }
+
+    @GetMapping(
+            value = "/{mrn}/latest",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns the latest version of the resource with the given MRN"
+    )
+    public Mono<ResponseEntity<MaritimeResourceDTO>> getLatestVersionOfResourceByMrn(@PathVariable String mrn, ServerHttpRequest request) {
+        Mono<MaritimeResourceDTO> resource = repository.findLatestByMrn(mrn).map(MaritimeResourceDTO::new);
+        return resource.map(this::cachedResponse).switchIfEmpty(notFound(mrn, request));
+    }
+
+    @GetMapping(
+            value = "/id/{resourceId}",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns the resource with the given ID"
+    )
+    public Mono<ResponseEntity<MaritimeResourceDTO>> getResourceById(@PathVariable String resourceId, ServerHttpRequest request) {
+        return repository.findShallowById(resourceId).map(MaritimeResourceDTO::new).map(this::cachedResponse)
+                .switchIfEmpty(Mono.error(() -> new MrrRestException(HttpStatus.NOT_FOUND, COULD_NOT_BE_FOUND, pathOf(request))));
+    }
+
+    // The delegations are usually held in memory. Otherwise they are looked up without blocking.
+    private Mono<MrrEntity> nearestMrr(String mrn) {
+        if (mrrService.isDelegationsLoaded())
+            return Mono.justOrEmpty(mrrService.searchForEarlierMrr(mrn));
+        return mrrRepository.findNearest(NamespaceSyntaxService.namespacesOf(List.of(mrn)));
+    }
+
+    private <T> Mono<T> notFound(String mrn, ServerHttpRequest request) {
+        return nearestMrr(mrn)
+                .<T>flatMap(mrr -> Mono.error(seeOther(mrr, request)))
+                .switchIfEmpty(Mono.error(() -> new MrrRestException(HttpStatus.NOT_FOUND, COULD_NOT_BE_FOUND, pathOf(request))));
+    }
+
+    private ResponseEntity<MaritimeResourceDTO> cachedResponse(MaritimeResourceDTO resource) {
+        return httpCachePolicy.ok(resource.getMrn(), resource, resource.getLastModified(), resource.getId(),
+                resource.getMrn(), resource.getVersion(), resource.getLocation(), resource.getName(),
+                resource.getDescription(), String.valueOf(resource.getLastModified()));
+    }
+
+    static MrrRestException seeOther(MrrEntity mrr, ServerHttpRequest request) {
+        return new MrrRestException(HttpStatus.SEE_OTHER,
+                "Please repeat your query in the MRR for the namespace " + mrr.getMrnNamespace(),
+                pathOf(request), mrr.getEndpoint() + pathOf(request));
+    }
+
+    static String pathOf(ServerHttpRequest request) {
+        return request.getPath().pathWithinApplication().value();
+    }
+}
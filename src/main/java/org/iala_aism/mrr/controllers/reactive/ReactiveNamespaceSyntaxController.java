@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.controllers.reactive;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.iala_aism.mrr.model.MrrEntity;
+import org.iala_aism.mrr.model.dto.NamespaceSyntaxDTO;
+import org.iala_aism.mrr.model.dto.OwnerDTO;
+import org.iala_aism.mrr.repositories.reactive.ReactiveMrrRepository;
+import org.iala_aism.mrr.repositories.reactive.ReactiveNamespaceSyntaxRepository;
+import org.iala_aism.mrr.services.MrrService;
+import org.iala_aism.mrr.services.NamespaceSyntaxService;
+import org.iala_aism.mrr.utils.HttpCachePolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.iala_aism.mrr.controllers.reactive.ReactiveMaritimeResourceController.seeOther;
+
+// The read API for syntax definitions on edge nodes, which run as reactive web applications
+@RestController
+@RequestMapping("/syntax")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveNamespaceSyntaxController {
+
+    private ReactiveNamespaceSyntaxRepository repository;
+    private ReactiveMrrRepository mrrRepository;
+    private MrrService mrrService;
+    private HttpCachePolicy httpCachePolicy;
+
+    @Autowired
+    public void setRepository(ReactiveNamespaceSyntaxRepository repository) {
+        this.repository = repository;
+    }
+
+    @Autowired
+    public void setMrrRepository(ReactiveMrrRepository mrrRepository) {
+        this.mrrRepository = mrrRepository;
+    }
+
+    @Autowired
+    public void setMrrService(MrrService mrrService) {
+        this.mrrService = mrrService;
+    }
+
+    @Autowired
+    public void setHttpCachePolicy(HttpCachePolicy httpCachePolicy) {
+        this.httpCachePolicy = httpCachePolicy;
+    }
+
+    @GetMapping(
+            path = "/{mrn}",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    @Operation(
+            description = "Returns the syntax definition that applies to the given MRN"
+    )
+    public Mono<ResponseEntity<NamespaceSyntaxDTO>> getNamespaceSyntaxForMrn(@PathVariable String mrn, ServerHttpRequest request) {
+        List<String> namespaces = List.copyOf(NamespaceSyntaxService.namespacesOf(List.of(mrn)));
+        // The syntax for the specific MRN or else the nearest one up the tree, unless another MRR is responsible for the MRN
+        return repository.findNearest(namespaces).map(NamespaceSyntaxDTO::new).map(Optional::of).defaultIfEmpty(Optional.empty())
+                .flatMap(syntax -> {
+                    if (syntax.isPresent() && syntax.get().getMrnNamespace().equals(mrn))
+                        return Mono.just(cachedResponse(mrn, syntax.get()));
+                    return nearestMrr(mrn, namespaces)
+                            .<ResponseEntity<NamespaceSyntaxDTO>>flatMap(mrr -> Mono.error(seeOther(mrr, request)))
+                            .switchIfEmpty(Mono.fromSupplier(() -> syntax.map(s -> cachedResponse(mrn, s))
+                                    .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND))));
+                });
+    }
+
+    @GetMapping(
+            path = "/all",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE}
+    )
+    @Operation(
+            description = "Streams all registered syntax definitions ordered by namespace"
+    )
+    public Flux<NamespaceSyntaxDTO> getAllNamespaceSyntaxes() {
+        return repository.findAllStartingWithNamespace("").map(NamespaceSyntaxDTO::new);
+    }
+
+    @GetMapping(
+            path = "/all/{namespace}",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE}
+    )
+    @Operation(
+            description = "Streams all syntax definitions that are registered under the given MRN namespace ordered by namespace"
+    )
+    public Flux<NamespaceSyntaxDTO> getAllNamespaceSyntaxesUnderNamespace(@PathVariable String namespace) {
+        return repository.findAllStartingWithNamespace(namespace).map(NamespaceSyntaxDTO::new);
+    }
+
+    private Mono<MrrEntity> nearestMrr(String mrn, List<String> namespaces) {
+        if (mrrService.isDelegationsLoaded())
+            return Mono.justOrEmpty(mrrService.searchForEarlierMrr(mrn));
+        return mrrRepository.findNearest(namespaces);
+    }
+
+    private ResponseEntity<NamespaceSyntaxDTO> cachedResponse(String mrn, NamespaceSyntaxDTO syntax) {
+        OwnerDTO owner = syntax.getOwner();
+        return httpCachePolicy.ok(mrn, syntax, syntax.getLastModified(), syntax.getId(), syntax.getMrnNamespace(),
+                syntax.getAbnfSyntax(), syntax.getRegex(), String.valueOf(syntax.getLastModified()),
+                owner != null ? owner.getName() : null, owner != null ? owner.getEmail() : null,
+                owner != null ? owner.getPhone() : null, owner != null ? owner.getUrl() : null,
+                owner != null ? owner.getAddress() : null, owner != null ? owner.getCountry() : null);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.model;
+
+import java.util.Map;
+
+// A single line of a registry archive. It holds either a node with its properties, or a relationship between
+// the IDs of two nodes. The first line of an archive is a header that only has the format and its version set.
+public record ArchiveEntry(String format, Integer version, String node, Map<String, Object> properties,
+                           String relationship, String from, String to) implements JsonSerializable {
+
+    public static final String FORMAT = "mrr-archive";
+    public static final int FORMAT_VERSION = 1;
+
+    public static ArchiveEntry header() {
+        return new ArchiveEntry(FORMAT, FORMAT_VERSION, null, null, null, null, null);
+    }
+
+    public static ArchiveEntry node(String label, Map<String, Object> properties) {
+        return new ArchiveEntry(null, null, label, properties, null, null, null);
+    }
+
+    public static ArchiveEntry relationship(String type, String from, String to) {
+        return new ArchiveEntry(null, null, null, null, type, from, to);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.model;
+
+// Tells the other nodes that something they may have cached has changed. The key is the MRN of a resource or the
+// MRN namespace of a delegation or syntax definition, and the version and ID are only set for resources.
+public record CacheInvalidation(String origin, Kind kind, String key, String version, String id) {
+
+    public enum Kind {
+        RESOURCE,
+        DELEGATION,
+        SYNTAX
+    }
+}
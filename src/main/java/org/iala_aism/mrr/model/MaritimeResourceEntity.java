@@ -22,6 +22,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.With;
 import org.hibernate.validator.constraints.URL;
+import org.iala_aism.mrr.utils.SemanticVersion;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
@@ -47,6 +48,16 @@ public class MaritimeResourceEntity {
     @Property
     private String version;
 
+    // The components of the version are stored separately so versions can be ordered by an index
+    @Property
+    private Integer versionMajor;
+
+    @Property
+    private Integer versionMinor;
+
+    @Property
+    private Integer versionPatch;
+
     @URL
     @Property
     private String location;
@@ -57,14 +68,26 @@ public class MaritimeResourceEntity {
     @Property
     private String description;
 
+    // Milliseconds since the epoch
+    @Property
+    private Long lastModified;
+
     @Relationship(value = "FOLLOWS")
     private NamespaceEntity namespace;
 
     public MaritimeResourceEntity(String mrn, String version, String location, String name, String description) {
         this.mrn = mrn;
-        this.version = version;
+        setVersion(version);
         this.location = location;
         this.name = name;
         this.description = description;
     }
+
+    public void setVersion(String version) {
+        this.version = version;
+        SemanticVersion semanticVersion = SemanticVersion.tryParse(version).orElse(null);
+        this.versionMajor = semanticVersion != null ? semanticVersion.major() : null;
+        this.versionMinor = semanticVersion != null ? semanticVersion.minor() : null;
+        this.versionPatch = semanticVersion != null ? semanticVersion.patch() : null;
+    }
 }
@@ -47,6 +47,10 @@ public class NamespaceSyntax {
     @Property
     private String regex;
 
+    // Milliseconds since the epoch
+    @Property
+    private Long lastModified;
+
     @Relationship(value = "OWNS_NAMESPACE", direction = INCOMING)
     private Owner owner;
 
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.iala_aism.mrr.model.dto.SyntaxCreationDTO;
+
+// A syntax creation waiting in the queue. The ID is that of the creation status that clients follow.
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SyntaxCreationJob implements JsonSerializable {
+    private String statusId;
+    private SyntaxCreationDTO syntax;
+    // The number of attempts that have failed so far
+    private int attempt;
+    private long enqueuedAt;
+    private String lastError;
+}
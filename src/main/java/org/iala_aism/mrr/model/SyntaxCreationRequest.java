@@ -31,6 +31,9 @@ public class SyntaxCreationRequest implements JsonSerializable {
     private String parentNamespace;
     @JsonProperty("namespace_owner")
     private OwnerDTO ownerDTO;
+    // Echoed in the result so that the results of many requests can be told apart on a single connection
+    @JsonProperty("correlation_id")
+    private String correlationId;
 
     public SyntaxCreationRequest(String abnf, String namespace, String parentNamespace, OwnerDTO ownerDTO) {
         this.function = "create";
@@ -16,6 +16,7 @@
 
 package org.iala_aism.mrr.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Getter;
 import lombok.Setter;
@@ -33,4 +34,7 @@ public class SyntaxCreationResult implements JsonSerializable {
     private String regex;
     @Schema(description = "An error message that is set if the creation results in an error")
     private String message;
+    @Schema(hidden = true)
+    @JsonProperty("correlation_id")
+    private String correlationId;
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.model.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.iala_aism.mrr.model.JsonSerializable;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static io.swagger.v3.oas.annotations.media.Schema.AccessMode.READ_ONLY;
+
+@Getter
+@AllArgsConstructor
+@Schema(description = "Object representing a page of a listing that is navigated using cursors")
+public class CursorPage<T> implements JsonSerializable {
+    @Schema(description = "The elements of the page", accessMode = READ_ONLY)
+    private final List<T> content;
+    @Schema(description = "The maximum number of elements of the page", accessMode = READ_ONLY)
+    private final int size;
+    @Schema(description = "The cursor of the next page. Is not set if this is the last page", accessMode = READ_ONLY)
+    private final String nextCursor;
+
+    // Builds a page from up to size + 1 fetched elements, where the extra element only tells that there is a next page
+    public static <E, T> CursorPage<T> of(List<E> fetched, int size, Function<E, String> cursorOf, Function<E, T> mapper) {
+        boolean hasNext = fetched.size() > size;
+        List<E> elements = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? cursorOf.apply(elements.get(size - 1)) : null;
+        return new CursorPage<>(elements.stream().map(mapper).toList(), size, nextCursor);
+    }
+}
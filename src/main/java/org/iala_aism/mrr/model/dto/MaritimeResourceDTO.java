@@ -46,6 +46,8 @@ public class MaritimeResourceDTO implements JsonSerializable {
     private String description;
     @Schema(description = "The unique ID of the resource in the MRR", accessMode = READ_ONLY)
     private String id;
+    @Schema(description = "When the resource was last modified, in milliseconds since the epoch", accessMode = READ_ONLY)
+    private Long lastModified;
 
     public MaritimeResourceDTO(MaritimeResourceEntity maritimeResourceEntity) {
         this.mrn = maritimeResourceEntity.getMrn();
@@ -54,5 +56,6 @@ public class MaritimeResourceDTO implements JsonSerializable {
         this.name = maritimeResourceEntity.getName();
         this.description = maritimeResourceEntity.getDescription();
         this.id = maritimeResourceEntity.getId();
+        this.lastModified = maritimeResourceEntity.getLastModified();
     }
 }
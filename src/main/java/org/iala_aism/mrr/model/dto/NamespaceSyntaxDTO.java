@@ -17,6 +17,7 @@
 package org.iala_aism.mrr.model.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.iala_aism.mrr.model.JsonSerializable;
 import org.iala_aism.mrr.model.NamespaceSyntax;
@@ -24,6 +25,7 @@ import org.iala_aism.mrr.model.NamespaceSyntax;
 import static io.swagger.v3.oas.annotations.media.Schema.AccessMode.READ_ONLY;
 
 @Getter
+@AllArgsConstructor
 @Schema(description = "Object representing the syntax definition for a MRN namespace")
 public class NamespaceSyntaxDTO implements JsonSerializable {
     @Schema(description = "The MRN namespace that this syntax describes", accessMode = READ_ONLY)
@@ -36,12 +38,17 @@ public class NamespaceSyntaxDTO implements JsonSerializable {
     private final OwnerDTO owner;
     @Schema(description = "The unique ID of the namespace syntax", accessMode = READ_ONLY)
     private final String id;
+    @Schema(description = "When the syntax definition was last modified, in milliseconds since the epoch", accessMode = READ_ONLY)
+    private final Long lastModified;
 
     public NamespaceSyntaxDTO(NamespaceSyntax namespaceSyntax) {
-        this.mrnNamespace = namespaceSyntax.getNamespace().getMrnNamespace();
+        // Syntax definitions that are read without their namespace carry the MRN namespace themselves
+        this.mrnNamespace = namespaceSyntax.getNamespace() != null
+                ? namespaceSyntax.getNamespace().getMrnNamespace() : namespaceSyntax.getMrnNamespace();
         this.abnfSyntax = namespaceSyntax.getAbnfSyntax();
         this.regex = namespaceSyntax.getRegex();
-        this.owner = new OwnerDTO(namespaceSyntax.getOwner());
+        this.owner = namespaceSyntax.getOwner() != null ? new OwnerDTO(namespaceSyntax.getOwner()) : null;
         this.id = namespaceSyntax.getId();
+        this.lastModified = namespaceSyntax.getLastModified();
     }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.model.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.iala_aism.mrr.model.JsonSerializable;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Object representing the result of registering a single resource of a batch")
+public class ResourceRegistrationResultDTO implements JsonSerializable {
+    @Schema(description = "The position of the resource in the batch, starting from 0")
+    private long index;
+    @Schema(description = "The MRN of the resource")
+    private String mrn;
+    @Schema(description = "The version of the resource")
+    private String version;
+    @Schema(description = "The HTTP status code that registering the resource on its own would have resulted in")
+    private int status;
+    @Schema(description = "The unique ID of the resource in the MRR if it was registered")
+    private String id;
+    @Schema(description = "An error message that is set if the resource could not be registered")
+    private String message;
+}
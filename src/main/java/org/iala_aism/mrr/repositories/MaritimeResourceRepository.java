@@ -17,8 +17,6 @@
 package org.iala_aism.mrr.repositories;
 
 import org.iala_aism.mrr.model.MaritimeResourceEntity;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
 
 import java.util.List;
@@ -26,13 +24,7 @@ import java.util.Optional;
 
 public interface MaritimeResourceRepository extends Neo4jRepository<MaritimeResourceEntity, String> {
 
-    Page<MaritimeResourceEntity> getAllByMrn(String mrn, Pageable pageable);
-
     Optional<MaritimeResourceEntity> getByMrnAndVersion(String mrn, String version);
 
     List<MaritimeResourceEntity> getByMrn(String mrn);
-
-    Page<MaritimeResourceEntity> findAllByMrnStartingWith(String namespace, Pageable pageable);
-
-    void deleteByMrnAndVersion(String mrn, String version);
 }
@@ -18,11 +18,25 @@ package org.iala_aism.mrr.repositories;
 
 import org.iala_aism.mrr.model.MrrEntity;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface MrrRepository extends Neo4jRepository<MrrEntity, String> {
     Optional<MrrEntity> getByMrnNamespace(String mrnNamespace);
 
+    // Only returns the MRR nodes themselves without following any of their relationships
+    @Query("MATCH (m:MRR) RETURN m")
+    List<MrrEntity> findAllDelegations();
+
+    @Query("MATCH (m:MRR {id: $id}) RETURN m.mrnNamespace")
+    Optional<String> findMrnNamespaceById(String id);
+
+    // Finds an MRR for the namespace itself or for any namespace below it
+    @Query("MATCH (m:MRR) WHERE m.mrnNamespace STARTS WITH $namespace " +
+            "AND (m.mrnNamespace = $namespace OR m.mrnNamespace STARTS WITH $namespace + ':') RETURN m LIMIT 1")
+    Optional<MrrEntity> findFirstWithinNamespace(String namespace);
+
     void deleteByMrnNamespace(String mrnNamespace);
 }
@@ -20,9 +20,29 @@ import org.iala_aism.mrr.model.NamespaceSyntax;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface NamespaceSyntaxRepository extends Neo4jRepository<NamespaceSyntax, String> {
     NamespaceSyntax findByMrnNamespace(String mrnNamespace);
 
+    // Only returns the syntax nodes and their owners, as the derived query would load the whole namespace tree around
+    // them. The page is always ordered by namespace and ID.
+    @Query(value = "MATCH (s:NamespaceSyntax) WHERE s.mrnNamespace STARTS WITH $namespace " +
+            "WITH s ORDER BY s.mrnNamespace, s.id SKIP $skip LIMIT $limit " +
+            "OPTIONAL MATCH (s)<-[r:OWNS_NAMESPACE]-(o:Owner) RETURN s, collect(r), collect(o) ORDER BY s.mrnNamespace, s.id",
+            countQuery = "MATCH (s:NamespaceSyntax) WHERE s.mrnNamespace STARTS WITH $namespace RETURN count(s)")
     Page<NamespaceSyntax> findAllByMrnNamespaceStartingWith(String namespace, Pageable pageable);
+
+    // Only returns the syntax nodes themselves without following any of their relationships
+    @Query("MATCH (s:NamespaceSyntax) WHERE s.mrnNamespace IN $namespaces RETURN s")
+    List<NamespaceSyntax> findAllByMrnNamespaceIn(Collection<String> namespaces);
+
+    // Seeks to the first syntax after the given namespace and ID instead of skipping over the preceding ones
+    @Query("MATCH (s:NamespaceSyntax) WHERE s.mrnNamespace STARTS WITH $namespace AND s.mrnNamespace >= $afterNamespace " +
+            "AND (s.mrnNamespace > $afterNamespace OR s.id > $afterId) " +
+            "RETURN s.id ORDER BY s.mrnNamespace, s.id LIMIT $limit")
+    List<String> findIdsByMrnNamespaceStartingWithAfter(String namespace, String afterNamespace, String afterId, int limit);
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.repositories.reactive;
+
+import org.iala_aism.mrr.model.MaritimeResourceEntity;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// The queries only return the resource nodes themselves without following any of their relationships
+public interface ReactiveMaritimeResourceRepository extends ReactiveNeo4jRepository<MaritimeResourceEntity, String> {
+
+    @Query("MATCH (r:MaritimeResource {id: $id}) RETURN r")
+    Mono<MaritimeResourceEntity> findShallowById(String id);
+
+    @Query("MATCH (r:MaritimeResource {mrn: $mrn, version: $version}) RETURN r")
+    Mono<MaritimeResourceEntity> findShallowByMrnAndVersion(String mrn, String version);
+
+    @Query("MATCH (r:MaritimeResource {mrn: $mrn}) RETURN r " +
+            "ORDER BY r.versionMajor DESC, r.versionMinor DESC, r.versionPatch DESC LIMIT 1")
+    Mono<MaritimeResourceEntity> findLatestByMrn(String mrn);
+
+    @Query("MATCH (r:MaritimeResource {mrn: $mrn}) RETURN r " +
+            "ORDER BY r.versionMajor DESC, r.versionMinor DESC, r.versionPatch DESC")
+    Flux<MaritimeResourceEntity> findAllVersionsByMrn(String mrn);
+
+    @Query("MATCH (r:MaritimeResource) WHERE r.mrn STARTS WITH $namespace RETURN r ORDER BY r.mrn, r.version")
+    Flux<MaritimeResourceEntity> findAllStartingWithNamespace(String namespace);
+}
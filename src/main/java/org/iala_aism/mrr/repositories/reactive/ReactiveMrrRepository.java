@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.repositories.reactive;
+
+import org.iala_aism.mrr.model.MrrEntity;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveMrrRepository extends ReactiveNeo4jRepository<MrrEntity, String> {
+
+    // The MRR of the longest of the given namespaces that has one, without following any of its relationships.
+    // Looks all namespaces up at once rather than walking up the tree one query at a time.
+    @Query("MATCH (m:MRR) WHERE m.mrnNamespace IN $namespaces RETURN m ORDER BY size(m.mrnNamespace) DESC LIMIT 1")
+    Mono<MrrEntity> findNearest(Collection<String> namespaces);
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.repositories.reactive;
+
+import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.springframework.data.neo4j.repository.ReactiveNeo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+// The queries return the syntax nodes with their owners, but not the namespace tree they are part of
+public interface ReactiveNamespaceSyntaxRepository extends ReactiveNeo4jRepository<NamespaceSyntax, String> {
+
+    // The syntax of the longest of the given namespaces that has one
+    @Query("MATCH (s:NamespaceSyntax) WHERE s.mrnNamespace IN $namespaces " +
+            "OPTIONAL MATCH (o:Owner)-[w:OWNS_NAMESPACE]->(s) " +
+            "RETURN s, collect(w), collect(o) ORDER BY size(s.mrnNamespace) DESC LIMIT 1")
+    Mono<NamespaceSyntax> findNearest(Collection<String> namespaces);
+
+    @Query("MATCH (s:NamespaceSyntax) WHERE s.mrnNamespace STARTS WITH $namespace " +
+            "OPTIONAL MATCH (o:Owner)-[w:OWNS_NAMESPACE]->(s) " +
+            "RETURN s, collect(w), collect(o) ORDER BY s.mrnNamespace, s.id")
+    Flux<NamespaceSyntax> findAllStartingWithNamespace(String namespace);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.security;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.web.server.WebFilter;
+
+// Edge nodes only serve reads, so everything but GET and OPTIONS is refused without looking at any token
+@Configuration
+@EnableWebFluxSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain reactiveFilterChain(ServerHttpSecurity http) {
+        http
+                .addFilterAt(corsFilter(), SecurityWebFiltersOrder.CORS)
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        .pathMatchers(HttpMethod.GET, "/**").permitAll()
+                        .anyExchange().denyAll()
+                );
+        return http.build();
+    }
+
+    // The same headers as the SimpleCorsFilter sets for the servlet stack
+    private static WebFilter corsFilter() {
+        return (exchange, chain) -> {
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+            String origin = exchange.getRequest().getHeaders().getOrigin();
+            if (origin != null)
+                headers.set("Access-Control-Allow-Origin", origin);
+            headers.set("Access-Control-Allow-Credentials", "true");
+            headers.set("Access-Control-Allow-Methods", "POST, GET, OPTIONS, DELETE, PUT");
+            headers.set("Access-Control-Max-Age", "3600");
+            headers.set("Access-Control-Allow-Headers", "Content-Type, Accept, X-Requested-With, remember-me, authorization");
+            return chain.filter(exchange);
+        };
+    }
+}
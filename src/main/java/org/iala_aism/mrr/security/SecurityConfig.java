@@ -17,6 +17,7 @@
 package org.iala_aism.mrr.security;
 
 import org.iala_aism.mrr.config.SimpleCorsFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -30,6 +31,7 @@ import org.springframework.security.web.access.channel.ChannelProcessingFilter;
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SecurityConfig {
 
     @Bean
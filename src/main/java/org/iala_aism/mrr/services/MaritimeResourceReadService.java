@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.utils.SemverRange;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.types.TypeSystem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Reads resources as flat DTOs. Only the properties of the resource nodes are returned, whereas loading the entities
+// would also load the graph of namespaces, syntax definitions and MRRs that they are connected to.
+@Service
+public class MaritimeResourceReadService {
+
+    // Each interval is a map with a lower (inclusive) and upper (exclusive) bound given as [major, minor, patch]
+    static final String VERSION_IN_INTERVALS = "any(i IN $intervals WHERE " +
+            "(i.lower IS NULL OR r.versionMajor > i.lower[0] OR (r.versionMajor = i.lower[0] AND " +
+            "(r.versionMinor > i.lower[1] OR (r.versionMinor = i.lower[1] AND r.versionPatch >= i.lower[2])))) AND " +
+            "(i.upper IS NULL OR r.versionMajor < i.upper[0] OR (r.versionMajor = i.upper[0] AND " +
+            "(r.versionMinor < i.upper[1] OR (r.versionMinor = i.upper[1] AND r.versionPatch < i.upper[2])))))";
+
+    static final String RETURN_FIELDS = " RETURN r.mrn AS mrn, r.version AS version, r.location AS location, " +
+            "r.name AS name, r.description AS description, r.id AS id, r.lastModified AS lastModified";
+    static final String BY_ID = "MATCH (r:MaritimeResource {id: $id})" + RETURN_FIELDS;
+    static final String BY_MRN_AND_VERSION = "MATCH (r:MaritimeResource {mrn: $mrn, version: $version})" + RETURN_FIELDS;
+    static final String LATEST_BY_MRN = "MATCH (r:MaritimeResource {mrn: $mrn})" + RETURN_FIELDS +
+            " ORDER BY r.versionMajor DESC, r.versionMinor DESC, r.versionPatch DESC LIMIT 1";
+    static final String BY_MRN = "MATCH (r:MaritimeResource {mrn: $mrn})";
+    static final String BY_MRN_IN_RANGE = "MATCH (r:MaritimeResource {mrn: $mrn}) WHERE " + VERSION_IN_INTERVALS;
+    static final String ALL = "MATCH (r:MaritimeResource)";
+    static final String STARTING_WITH_NAMESPACE = "MATCH (r:MaritimeResource) WHERE r.mrn STARTS WITH $namespace";
+    static final String STARTING_WITH_NAMESPACE_AFTER = "MATCH (r:MaritimeResource) WHERE r.mrn STARTS WITH $namespace " +
+            "AND r.mrn >= $afterMrn AND (r.mrn > $afterMrn OR r.version > $afterVersion)" + RETURN_FIELDS +
+            " ORDER BY r.mrn, r.version LIMIT $limit";
+
+    private static final String VERSION_ORDER = "r.versionMajor DESC, r.versionMinor DESC, r.versionPatch DESC";
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("mrn", "version", "location", "name", "description", "id");
+
+    private Neo4jClient neo4jClient;
+    private ResourceResolutionCache cache;
+    private MrnFilterService mrnFilter;
+
+    @Autowired
+    public void setNeo4jClient(Neo4jClient neo4jClient) {
+        this.neo4jClient = neo4jClient;
+    }
+
+    @Autowired
+    public void setCache(ResourceResolutionCache cache) {
+        this.cache = cache;
+    }
+
+    @Autowired
+    public void setMrnFilter(MrnFilterService mrnFilter) {
+        this.mrnFilter = mrnFilter;
+    }
+
+    public Optional<MaritimeResourceDTO> getById(String id) {
+        return cache.getById(id, () -> neo4jClient.query(BY_ID).bind(id).to("id")
+                .fetchAs(MaritimeResourceDTO.class).mappedBy(MaritimeResourceReadService::toDTO).one());
+    }
+
+    // Lookups of MRNs that are certainly not registered neither reach the database nor take up room in the cache
+    public Optional<MaritimeResourceDTO> getByMrnAndVersion(String mrn, String version) {
+        if (!mrnFilter.mightExist(mrn))
+            return Optional.empty();
+        return cache.getByMrnAndVersion(mrn, version, () -> neo4jClient.query(BY_MRN_AND_VERSION)
+                .bind(mrn).to("mrn").bind(version).to("version")
+                .fetchAs(MaritimeResourceDTO.class).mappedBy(MaritimeResourceReadService::toDTO).one());
+    }
+
+    public Optional<MaritimeResourceDTO> getLatestByMrn(String mrn) {
+        if (!mrnFilter.mightExist(mrn))
+            return Optional.empty();
+        return cache.getLatestByMrn(mrn, () -> neo4jClient.query(LATEST_BY_MRN).bind(mrn).to("mrn")
+                .fetchAs(MaritimeResourceDTO.class).mappedBy(MaritimeResourceReadService::toDTO).one());
+    }
+
+    public Page<MaritimeResourceDTO> getAllByMrn(String mrn, Pageable pageable) {
+        if (!mrnFilter.mightExist(mrn))
+            return Page.empty(pageable);
+        return page(BY_MRN, Map.of("mrn", mrn), null, pageable);
+    }
+
+    // Returns the versions of the given MRN that satisfy the range, ordered from the newest to the oldest
+    public Page<MaritimeResourceDTO> getAllByMrnInRange(String mrn, SemverRange range, Pageable pageable) {
+        if (!mrnFilter.mightExist(mrn))
+            return Page.empty(pageable);
+        return page(BY_MRN_IN_RANGE, Map.of("mrn", mrn, "intervals", range.toParameters()), VERSION_ORDER, pageable);
+    }
+
+    public Page<MaritimeResourceDTO> getAll(Pageable pageable) {
+        return page(ALL, Map.of(), null, pageable);
+    }
+
+    public Page<MaritimeResourceDTO> getAllStartingWithNamespace(String namespace, Pageable pageable) {
+        return page(STARTING_WITH_NAMESPACE, Map.of("namespace", namespace), null, pageable);
+    }
+
+    // Returns up to limit resources under the namespace, ordered by MRN and version, that come after the given ones.
+    // An empty namespace matches all resources and an empty MRN starts from the beginning.
+    public List<MaritimeResourceDTO> getAllStartingWithNamespaceAfter(String namespace, String afterMrn, String afterVersion, int limit) {
+        return List.copyOf(neo4jClient.query(STARTING_WITH_NAMESPACE_AFTER)
+                .bindAll(Map.of("namespace", namespace, "afterMrn", afterMrn, "afterVersion", afterVersion, "limit", limit))
+                .fetchAs(MaritimeResourceDTO.class).mappedBy(MaritimeResourceReadService::toDTO).all());
+    }
+
+    // Runs the match with the paging of the given pageable. The order of the pageable is used unless a fixed order is given.
+    private Page<MaritimeResourceDTO> page(String match, Map<String, Object> parameters, String fixedOrder, Pageable pageable) {
+        String order = fixedOrder != null ? fixedOrder : orderOf(pageable.getSort());
+        StringBuilder query = new StringBuilder(match).append(RETURN_FIELDS);
+        if (!order.isEmpty())
+            query.append(" ORDER BY ").append(order);
+        Map<String, Object> pagedParameters = new HashMap<>(parameters);
+        if (pageable.isPaged()) {
+            query.append(" SKIP $skip LIMIT $limit");
+            pagedParameters.put("skip", pageable.getOffset());
+            pagedParameters.put("limit", pageable.getPageSize());
+        }
+        List<MaritimeResourceDTO> content = List.copyOf(neo4jClient.query(query.toString()).bindAll(pagedParameters)
+                .fetchAs(MaritimeResourceDTO.class).mappedBy(MaritimeResourceReadService::toDTO).all());
+        // The count is only queried when it cannot be derived from the page itself
+        return PageableExecutionUtils.getPage(content, pageable, () -> neo4jClient.query(match + " RETURN count(r)")
+                .bindAll(parameters).fetchAs(Long.class).one().orElse(0L));
+    }
+
+    // Properties that are not part of the DTO are ignored so that no arbitrary expressions end up in the query
+    private static String orderOf(Sort sort) {
+        return sort.stream()
+                .filter(order -> SORTABLE_PROPERTIES.contains(order.getProperty()))
+                .map(order -> "r." + order.getProperty() + (order.isDescending() ? " DESC" : ""))
+                .collect(Collectors.joining(", "));
+    }
+
+    private static MaritimeResourceDTO toDTO(TypeSystem typeSystem, Record record) {
+        return new MaritimeResourceDTO(record.get("mrn").asString(null), record.get("version").asString(null),
+                record.get("location").asString(null), record.get("name").asString(null),
+                record.get("description").asString(null), record.get("id").asString(null),
+                record.get("lastModified").isNull() ? null : record.get("lastModified").asLong());
+    }
+}
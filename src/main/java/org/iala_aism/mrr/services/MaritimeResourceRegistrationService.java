@@ -0,0 +1,270 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.exceptions.MrrRestException;
+import org.iala_aism.mrr.model.MaritimeResourceEntity;
+import org.iala_aism.mrr.model.MrrEntity;
+import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.model.dto.ResourceRegistrationResultDTO;
+import org.iala_aism.mrr.utils.AccessControlUtil;
+import org.iala_aism.mrr.utils.NamespaceTrie;
+import org.iala_aism.mrr.utils.SemanticVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.iala_aism.mrr.services.MaritimeResourceService.resourceKey;
+
+// Holds the rules for registering resources, both one at a time and in bulk
+@Service
+@Slf4j
+public class MaritimeResourceRegistrationService {
+
+    public static final String ALREADY_EXISTS = "A resource with the given combination of MRN and version already exists";
+
+    // Starts a new virtual thread for every task, so it holds no threads that would need to be shut down
+    private static final Executor VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private MaritimeResourceService resourceService;
+    private MaritimeResourceReadService readService;
+    private NamespaceSyntaxService namespaceSyntaxService;
+    private NamespaceSyntaxValidationService syntaxValidationService;
+    private MrrService mrrService;
+    private AccessControlUtil accessControlUtil;
+    private ObjectMapper mapper;
+
+    @Value("${org.iala_aism.mrr.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${org.iala_aism.mrr.virtual-threads.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    public void setResourceService(MaritimeResourceService resourceService) {
+        this.resourceService = resourceService;
+    }
+
+    @Autowired
+    public void setReadService(MaritimeResourceReadService readService) {
+        this.readService = readService;
+    }
+
+    @Autowired
+    public void setNamespaceSyntaxService(NamespaceSyntaxService namespaceSyntaxService) {
+        this.namespaceSyntaxService = namespaceSyntaxService;
+    }
+
+    @Autowired
+    public void setSyntaxValidationService(NamespaceSyntaxValidationService syntaxValidationService) {
+        this.syntaxValidationService = syntaxValidationService;
+    }
+
+    @Autowired
+    public void setMrrService(MrrService mrrService) {
+        this.mrrService = mrrService;
+    }
+
+    @Autowired
+    public void setAccessControlUtil(AccessControlUtil accessControlUtil) {
+        this.accessControlUtil = accessControlUtil;
+    }
+
+    @Autowired
+    public void setMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public MaritimeResourceEntity register(MaritimeResourceDTO maritimeResourceDTO, String path) throws MrrRestException, URISyntaxException {
+        MaritimeResourceEntity entity = new MaritimeResourceEntity(maritimeResourceDTO.getMrn(), maritimeResourceDTO.getVersion(),
+                maritimeResourceDTO.getLocation(), maritimeResourceDTO.getName(), maritimeResourceDTO.getDescription());
+
+        checkDelegation(mrrService.searchForEarlierMrr(entity.getMrn()), path);
+        checkNotRegistered(readService.getByMrnAndVersion(entity.getMrn(), entity.getVersion()).isPresent(), path);
+        checkVersion(entity.getVersion(), path);
+        checkSyntax(entity.getMrn(), namespaceSyntaxService.findNamespaceSyntaxForMrn(entity.getMrn()));
+
+        return resourceService.save(entity);
+    }
+
+    // Reads resources given as a JSON array or as newline delimited JSON and registers them chunk by chunk.
+    // A result is written as a line of JSON for every resource in the order they were read.
+    public void registerAll(InputStream in, OutputStream out, String path) throws IOException {
+        try (MappingIterator<MaritimeResourceDTO> iterator = mapper.readerFor(MaritimeResourceDTO.class).readValues(in)) {
+            long offset = 0;
+            boolean done = false;
+            while (!done) {
+                List<MaritimeResourceDTO> chunk = new ArrayList<>(chunkSize);
+                String parseError = null;
+                try {
+                    while (chunk.size() < chunkSize && iterator.hasNextValue()) {
+                        chunk.add(iterator.nextValue());
+                    }
+                    done = chunk.size() < chunkSize;
+                } catch (IOException | RuntimeException e) {
+                    parseError = e.getMessage();
+                    done = true;
+                }
+                for (ResourceRegistrationResultDTO result : registerChunk(chunk, offset, path)) {
+                    writeLine(out, result);
+                }
+                offset += chunk.size();
+                if (parseError != null) {
+                    log.debug("Stopped reading batch of resources at index {}: {}", offset, parseError);
+                    writeLine(out, new ResourceRegistrationResultDTO(offset, null, null, HttpStatus.BAD_REQUEST.value(), null,
+                            "The resource could not be parsed: " + parseError));
+                }
+                out.flush();
+            }
+        }
+    }
+
+    private List<ResourceRegistrationResultDTO> registerChunk(List<MaritimeResourceDTO> chunk, long offset, String path) {
+        int size = chunk.size();
+        ResourceRegistrationResultDTO[] results = new ResourceRegistrationResultDTO[size];
+        MaritimeResourceEntity[] entities = new MaritimeResourceEntity[size];
+
+        // Access control relies on the security context of the current thread so it is checked before going parallel.
+        // Usually the whole chunk is allowed, so it is checked at once and only checked resource by resource if not.
+        boolean allowed = accessControlUtil.canManageAll(chunk.stream()
+                .filter(dto -> dto != null && dto.getMrn() != null && !dto.getMrn().isBlank()).map(MaritimeResourceDTO::getMrn).toList());
+        List<MaritimeResourceEntity> candidates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MaritimeResourceDTO dto = chunk.get(i);
+            if (dto == null || dto.getMrn() == null || dto.getMrn().isBlank()) {
+                results[i] = result(offset + i, dto, HttpStatus.BAD_REQUEST, "The resource must have an MRN");
+            } else if (!allowed && !accessControlUtil.canManageNamespace(dto.getMrn())) {
+                results[i] = result(offset + i, dto, HttpStatus.FORBIDDEN, "You are not allowed to manage the namespace of this resource");
+            } else {
+                entities[i] = new MaritimeResourceEntity(dto.getMrn(), dto.getVersion(), dto.getLocation(), dto.getName(), dto.getDescription());
+                candidates.add(entities[i]);
+            }
+        }
+        if (candidates.isEmpty())
+            return List.of(results);
+
+        Set<String> existing = resourceService.getExistingResourceKeys(
+                candidates.stream().filter(e -> e.getVersion() != null).toList());
+        NamespaceTrie<NamespaceSyntax> syntaxes = namespaceSyntaxService.findNamespaceSyntaxesForMrns(
+                candidates.stream().map(MaritimeResourceEntity::getMrn).toList());
+
+        // The checks may query the database, which is better waited for on virtual threads when they are enabled
+        Executor executor = virtualThreads ? VIRTUAL_THREADS : ForkJoinPool.commonPool();
+        CompletableFuture.allOf(IntStream.range(0, size).filter(i -> entities[i] != null).mapToObj(i -> CompletableFuture.runAsync(() -> {
+            MaritimeResourceEntity entity = entities[i];
+            try {
+                checkDelegation(mrrService.searchForEarlierMrr(entity.getMrn()), path);
+                checkNotRegistered(existing.contains(resourceKey(entity.getMrn(), entity.getVersion())), path);
+                checkVersion(entity.getVersion(), path);
+                checkSyntax(entity.getMrn(), syntaxes.findNearest(entity.getMrn()).orElse(null));
+            } catch (MrrRestException e) {
+                results[i] = result(offset + i, chunk.get(i), e.getStatus(), e.getErrorMessage());
+            } catch (URISyntaxException e) {
+                results[i] = result(offset + i, chunk.get(i), HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        }, executor)).toArray(CompletableFuture[]::new)).join();
+
+        // The first occurrence of an MRN and version combination within the batch wins
+        List<MaritimeResourceEntity> valid = new ArrayList<>(size);
+        List<Integer> validIndexes = new ArrayList<>(size);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            if (entities[i] == null || results[i] != null)
+                continue;
+            if (!seen.add(resourceKey(entities[i].getMrn(), entities[i].getVersion()))) {
+                results[i] = result(offset + i, chunk.get(i), HttpStatus.CONFLICT, ALREADY_EXISTS);
+                continue;
+            }
+            valid.add(entities[i]);
+            validIndexes.add(i);
+        }
+
+        try {
+            resourceService.saveAll(valid);
+            for (int i : validIndexes) {
+                results[i] = result(offset + i, chunk.get(i), HttpStatus.CREATED, null);
+                results[i].setId(entities[i].getId());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not save a chunk of {} resources", valid.size(), e);
+            for (int i : validIndexes) {
+                results[i] = result(offset + i, chunk.get(i), HttpStatus.INTERNAL_SERVER_ERROR, "The resource could not be saved");
+            }
+        }
+        return List.of(results);
+    }
+
+    private void checkDelegation(Optional<MrrEntity> maybeMrr, String path) throws MrrRestException {
+        if (maybeMrr.isPresent()) {
+            throw new MrrRestException(HttpStatus.BAD_REQUEST,
+                    String.format("An MRR for the namespace %s exists. Please register your resource there",
+                            maybeMrr.get().getMrnNamespace()), path);
+        }
+    }
+
+    private void checkNotRegistered(boolean exists, String path) throws MrrRestException {
+        if (exists) {
+            throw new MrrRestException(HttpStatus.CONFLICT, ALREADY_EXISTS, path);
+        }
+    }
+
+    private void checkVersion(String version, String path) throws MrrRestException {
+        if (version == null || !SemanticVersion.VERSION_PATTERN.matcher(version).matches())
+            throw new MrrRestException(HttpStatus.BAD_REQUEST, "The version of the resource does not match the format X.Y.Z", path);
+    }
+
+    private void checkSyntax(String mrn, NamespaceSyntax syntax) throws URISyntaxException {
+        if (syntax == null) {
+            throw new URISyntaxException("A syntax definition could not be found for the MRN of the resource", mrn);
+        }
+        if (!syntaxValidationService.matches(syntax, mrn)) {
+            String namespace = syntax.getNamespace() != null ? syntax.getNamespace().getMrnNamespace() : syntax.getMrnNamespace();
+            throw new URISyntaxException(mrn,
+                    String.format("The MRN of the resource does not follow the syntax definition for %s", namespace));
+        }
+    }
+
+    private void writeLine(OutputStream out, ResourceRegistrationResultDTO result) throws IOException {
+        out.write(mapper.writeValueAsBytes(result));
+        out.write('\n');
+    }
+
+    private static ResourceRegistrationResultDTO result(long index, MaritimeResourceDTO dto, HttpStatus status, String message) {
+        return new ResourceRegistrationResultDTO(index, dto != null ? dto.getMrn() : null, dto != null ? dto.getVersion() : null,
+                status.value(), null, message);
+    }
+}
@@ -18,87 +18,156 @@ package org.iala_aism.mrr.services;
 
 import org.iala_aism.mrr.model.MaritimeResourceEntity;
 import org.iala_aism.mrr.repositories.MaritimeResourceRepository;
+import org.iala_aism.mrr.utils.TransactionHooks;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.neo4j.core.Neo4jClient;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 public class MaritimeResourceService {
 
+    static final String CREATE_RESOURCES = """
+            UNWIND $resources AS resource
+            MATCH (n:Namespace {mrnNamespace: resource.mrn})
+            CREATE (r:MaritimeResource)-[:FOLLOWS]->(n)
+            SET r = resource
+            """;
+    static final String DELETE_BY_MRN_AND_VERSION = """
+            MATCH (r:MaritimeResource {mrn: $mrn, version: $version})
+            WITH r, r.id AS id
+            DETACH DELETE r
+            RETURN id
+            """;
+    static final String DELETE_BY_ID = """
+            MATCH (r:MaritimeResource {id: $id})
+            WITH r, r.mrn AS mrn, r.version AS version
+            DETACH DELETE r
+            RETURN mrn, version
+            """;
+
     private MaritimeResourceRepository repository;
+    private NamespaceService namespaceService;
+    private Neo4jClient neo4jClient;
+    private ResourceResolutionCache cache;
+    private MrnFilterService mrnFilter;
 
     @Autowired
     public void setRepository(MaritimeResourceRepository repository) {
         this.repository = repository;
     }
 
+    @Autowired
+    public void setNamespaceService(NamespaceService namespaceService) {
+        this.namespaceService = namespaceService;
+    }
+
+    @Autowired
+    public void setNeo4jClient(Neo4jClient neo4jClient) {
+        this.neo4jClient = neo4jClient;
+    }
+
+    @Autowired
+    public void setCache(ResourceResolutionCache cache) {
+        this.cache = cache;
+    }
+
+    @Autowired
+    public void setMrnFilter(MrnFilterService mrnFilter) {
+        this.mrnFilter = mrnFilter;
+    }
+
+    // Creates the resource node with a single edge to its namespace. Saving the entity instead would also write
+    // every node reachable through the namespace.
     @Transactional
     public MaritimeResourceEntity save(MaritimeResourceEntity entity) {
-        return repository.save(entity);
+        return saveAll(List.of(entity)).get(0);
+    }
+
+    // Saves new resources and their namespaces with a fixed number of bulk statements
+    @Transactional
+    public List<MaritimeResourceEntity> saveAll(List<MaritimeResourceEntity> entities) {
+        if (entities.isEmpty())
+            return entities;
+        namespaceService.mergeNamespaces(entities.stream().map(MaritimeResourceEntity::getMrn).toList());
+        List<Map<String, Object>> resources = new ArrayList<>(entities.size());
+        long now = System.currentTimeMillis();
+        for (MaritimeResourceEntity entity : entities) {
+            entity.setId(UUID.randomUUID().toString());
+            entity.setLastModified(now);
+            resources.add(propertiesOf(entity));
+        }
+        neo4jClient.query(CREATE_RESOURCES).bind(resources).to("resources").run();
+        for (MaritimeResourceEntity entity : entities) {
+            cache.invalidate(entity.getMrn(), entity.getVersion(), null);
+        }
+        List<String> mrns = entities.stream().map(MaritimeResourceEntity::getMrn).toList();
+        TransactionHooks.afterCommit(() -> mrnFilter.addAll(mrns));
+        return entities;
     }
 
     @Transactional
     public void delete(MaritimeResourceEntity entity) {
         repository.delete(entity);
+        cache.invalidate(entity.getMrn(), entity.getVersion(), entity.getId());
     }
 
     @Transactional
     public void deleteByMrnAndVersion(String mrn, String version) {
-        repository.deleteByMrnAndVersion(mrn, version);
+        neo4jClient.query(DELETE_BY_MRN_AND_VERSION).bind(mrn).to("mrn").bind(version).to("version")
+                .fetchAs(String.class).one()
+                .ifPresent(id -> cache.invalidate(mrn, version, id));
     }
 
     @Transactional
     public void deleteById(String id) {
-        repository.deleteById(id);
-    }
-
-    public Optional<MaritimeResourceEntity> getById(String id) {
-        return repository.findById(id);
-    }
-
-    public Optional<MaritimeResourceEntity> getByMrnAndVersion(String mrn, String version) {
-        return repository.getByMrnAndVersion(mrn, version);
-    }
-
-    public Optional<MaritimeResourceEntity> getLatestByMrn(String mrn) {
-        List<MaritimeResourceEntity> resourceEntities = repository.getByMrn(mrn);
-
-        // Sort based on versions with '.' seperated parts
-        resourceEntities.sort((mr1, mr2) -> {
-            String[] mr1VersionSplit = mr1.getVersion().split("\\.");
-            String[] mr2VersionSplit = mr2.getVersion().split("\\.");
-
-            for (int i = 0; i < mr1VersionSplit.length; i++) {
-                int v1 = Integer.parseInt(mr1VersionSplit[i]);
-                int v2 = Integer.parseInt(mr2VersionSplit[i]);
-
-                if (v1 < v2)
-                    return -1;
-                else if (v1 > v2)
-                    return 1;
-            }
-            return 0;
-        });
-
-        if (!resourceEntities.isEmpty())
-            return Optional.of(resourceEntities.get(0));
-        return Optional.empty();
+        neo4jClient.query(DELETE_BY_ID).bind(id).to("id")
+                .fetch().one()
+                .ifPresent(deleted -> cache.invalidate((String) deleted.get("mrn"), (String) deleted.get("version"), id));
     }
 
-    public Page<MaritimeResourceEntity> getAllByMrn(String mrn, Pageable pageable) {
-        return repository.getAllByMrn(mrn, pageable);
+    // Returns the keys, as given by resourceKey, of the resources that are already registered
+    public Set<String> getExistingResourceKeys(Collection<MaritimeResourceEntity> entities) {
+        List<Map<String, String>> keys = entities.stream()
+                .map(e -> Map.of("mrn", e.getMrn(), "version", e.getVersion()))
+                .toList();
+        Collection<String> existing = neo4jClient.query("""
+                        UNWIND $keys AS key
+                        MATCH (r:MaritimeResource {mrn: key.mrn, version: key.version})
+                        RETURN r.mrn AS mrn, r.version AS version
+                        """)
+                .bind(keys).to("keys")
+                .fetchAs(String.class)
+                .mappedBy((typeSystem, record) -> resourceKey(record.get("mrn").asString(), record.get("version").asString()))
+                .all();
+        return new HashSet<>(existing);
     }
 
-    public Page<MaritimeResourceEntity> getAll(Pageable pageable) {
-        return repository.findAll(pageable);
+    public static String resourceKey(String mrn, String version) {
+        return mrn + '\u0000' + version;
     }
 
-    public Page<MaritimeResourceEntity> getAllStartingWithNamespace(String namespace, Pageable pageable) {
-        return repository.findAllByMrnStartingWith(namespace, pageable);
+    private static Map<String, Object> propertiesOf(MaritimeResourceEntity entity) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("id", entity.getId());
+        properties.put("mrn", entity.getMrn());
+        properties.put("version", entity.getVersion());
+        properties.put("versionMajor", entity.getVersionMajor());
+        properties.put("versionMinor", entity.getVersionMinor());
+        properties.put("versionPatch", entity.getVersionPatch());
+        properties.put("location", entity.getLocation());
+        properties.put("name", entity.getName());
+        properties.put("description", entity.getDescription());
+        properties.put("lastModified", entity.getLastModified());
+        return properties;
     }
 }
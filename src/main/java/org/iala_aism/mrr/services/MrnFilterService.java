@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.CacheInvalidation;
+import org.iala_aism.mrr.utils.BloomFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Keeps a Bloom filter over the MRNs of all registered resources, so that lookups of MRNs that do not exist can be
+// answered with a single probe of the MRN index, instead of the lookup and the walk for a delegating MRR. The filter
+// only knows the MRNs that were there when it was built, that were registered on this node and that other nodes have
+// announced since, and announcements can be late or lost. So a miss of the filter is always confirmed by the probe.
+// Until the filter has been built every MRN might exist.
+@Service
+@Slf4j
+public class MrnFilterService {
+
+    static final String COUNT_MRNS = "MATCH (r:MaritimeResource) RETURN count(DISTINCT r.mrn)";
+    static final String MRNS_AFTER = "MATCH (r:MaritimeResource) WHERE r.mrn > $afterMrn " +
+            "RETURN DISTINCT r.mrn AS mrn ORDER BY mrn LIMIT $limit";
+    static final String PROBE = "MATCH (r:MaritimeResource {mrn: $mrn}) RETURN r.mrn LIMIT 1";
+
+    private static final int BATCH_SIZE = 10000;
+
+    private Neo4jClient neo4jClient;
+    private Counter rejections;
+    private Counter recoveries;
+
+    // The filter being built by a rebuild, which also receives every MRN added while it is being built
+    private volatile BloomFilter building;
+    private volatile BloomFilter filter;
+
+    @Value("${org.iala_aism.mrr.mrn-filter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${org.iala_aism.mrr.mrn-filter.false-positive-probability:0.01}")
+    private double falsePositiveProbability;
+
+    @Autowired
+    public void setNeo4jClient(Neo4jClient neo4jClient) {
+        this.neo4jClient = neo4jClient;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.rejections = Counter.builder("mrr.mrn.filter.rejections")
+                .description("Lookups of MRNs that were answered without the database because the MRN is not registered")
+                .register(meterRegistry);
+        this.recoveries = Counter.builder("mrr.mrn.filter.recoveries")
+                .description("MRNs that were missing from the filter but found by the probe, such as those registered on other nodes")
+                .register(meterRegistry);
+    }
+
+    // False if the MRN is not registered
+    public boolean mightExist(String mrn) {
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(mrn))
+            return true;
+        if (neo4jClient.query(PROBE).bind(mrn).to("mrn").fetchAs(String.class).one().isPresent()) {
+            recoveries.increment();
+            addAll(List.of(mrn));
+            return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    // Must be called once the registration of the MRNs has been committed
+    public void addAll(Collection<String> mrns) {
+        BloomFilter next = building;
+        BloomFilter current = filter;
+        for (String mrn : mrns) {
+            if (next != null)
+                next.put(mrn);
+            if (current != null)
+                current.put(mrn);
+        }
+    }
+
+    // Other nodes publish the resources they register and delete. Adding a deleted MRN is harmless, as it only keeps
+    // its lookups going to the database until the next rebuild. This saves the probes of the MRNs that other nodes
+    // registered, but a lookup of such an MRN that comes before the announcement is still found by its probe.
+    @EventListener
+    public void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.kind() == CacheInvalidation.Kind.RESOURCE)
+            addAll(List.of(invalidation.key()));
+    }
+
+    // Rebuilding is how deleted MRNs are forgotten
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${org.iala_aism.mrr.mrn-filter.rebuild-interval:PT10M}",
+            initialDelayString = "${org.iala_aism.mrr.mrn-filter.rebuild-interval:PT10M}")
+    public synchronized void rebuild() {
+        if (!enabled)
+            return;
+        try {
+            long count = neo4jClient.query(COUNT_MRNS).fetchAs(Long.class).one().orElse(0L);
+            // Leaves room for the MRNs that are registered until the next rebuild
+            BloomFilter next = new BloomFilter(Math.max(count * 2, 100_000), falsePositiveProbability);
+            // Registrations committed from now on are added by addAll, those committed before are found by the scan
+            building = next;
+            String after = "";
+            long scanned = 0;
+            while (true) {
+                List<String> mrns = List.copyOf(neo4jClient.query(MRNS_AFTER)
+                        .bindAll(Map.of("afterMrn", after, "limit", BATCH_SIZE))
+                        .fetchAs(String.class).all());
+                mrns.forEach(next::put);
+                scanned += mrns.size();
+                if (mrns.size() < BATCH_SIZE)
+                    break;
+                after = mrns.get(mrns.size() - 1);
+            }
+            filter = next;
+            log.info("Built the MRN filter from {} MRNs", scanned);
+        } catch (RuntimeException e) {
+            log.warn("Could not build the MRN filter, {}: {}",
+                    filter == null ? "looking up every MRN in the database" : "keeping the previous one", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+}
@@ -16,43 +16,169 @@
 
 package org.iala_aism.mrr.services;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.CacheInvalidation;
 import org.iala_aism.mrr.model.MrrEntity;
-import org.iala_aism.mrr.model.NamespaceEntity;
+import org.iala_aism.mrr.model.Owner;
 import org.iala_aism.mrr.repositories.MrrRepository;
+import org.iala_aism.mrr.utils.NamespaceTrie;
+import org.iala_aism.mrr.utils.TransactionHooks;
+import org.neo4j.driver.Record;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
+@Slf4j
 public class MrrService {
 
+    static final String CREATE_MRR = """
+            MATCH (n:Namespace {mrnNamespace: $mrr.mrnNamespace})
+            CREATE (m:MRR)-[:CONTAINS]->(n)
+            SET m = $mrr
+            FOREACH (owner IN CASE WHEN $owner IS NULL THEN [] ELSE [$owner] END |
+                CREATE (o:Owner)-[:OWNS_MRR]->(m)
+                SET o = owner)
+            """;
+
+    static final String UPDATE_ENDPOINT = """
+            MATCH (m:MRR {id: $id})
+            SET m.endpoint = $endpoint
+            RETURN m.id AS id, m.mrnNamespace AS mrnNamespace, m.endpoint AS endpoint
+            """;
+
+    static final String DELEGATION = """
+            MATCH (m:MRR {mrnNamespace: $mrnNamespace})
+            RETURN m.id AS id, m.mrnNamespace AS mrnNamespace, m.endpoint AS endpoint
+            """;
+
     private MrrRepository repository;
+    private NamespaceService namespaceService;
+    private Neo4jClient neo4jClient;
+    private SharedCacheService sharedCache;
+    private DistributionSummary walkDepth;
+
+    // In-memory copy of all MRR delegations, keyed by their MRN namespace
+    private final NamespaceTrie<MrrEntity> delegations = new NamespaceTrie<>();
+    private volatile boolean delegationsLoaded;
 
     @Autowired
     public void setRepository(MrrRepository repository) {
         this.repository = repository;
     }
 
+    @Autowired
+    public void setNamespaceService(NamespaceService namespaceService) {
+        this.namespaceService = namespaceService;
+    }
+
+    @Autowired
+    public void setNeo4jClient(Neo4jClient neo4jClient) {
+        this.neo4jClient = neo4jClient;
+    }
+
+    @Autowired
+    public void setSharedCache(SharedCacheService sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.walkDepth = NamespaceSyntaxService.walkDepthSummary("mrr", meterRegistry);
+    }
+
+    // Reloading also recovers from invalidations that were missed while Redis or the database was unavailable
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${org.iala_aism.mrr.delegations.reload-interval:PT15M}",
+            initialDelayString = "${org.iala_aism.mrr.delegations.reload-interval:PT15M}")
+    public void loadDelegations() {
+        // The trie synchronizes its writes on itself, so updates made while loading are not lost
+        synchronized (delegations) {
+            try {
+                List<MrrEntity> mrrs = repository.findAllDelegations();
+                Map<String, MrrEntity> entries = new HashMap<>();
+                for (MrrEntity mrr : mrrs) {
+                    entries.put(mrr.getMrnNamespace(), delegationOf(mrr));
+                }
+                delegations.replaceAll(entries);
+                delegationsLoaded = true;
+                log.info("Loaded {} MRR delegations", entries.size());
+            } catch (RuntimeException e) {
+                log.warn("Could not load the MRR delegations, falling back to database lookups: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Creates the MRR node with its owner and a single edge to its namespace. Saving the entity instead would
+    // also write every node reachable through the namespace.
     @Transactional
-    public MrrEntity save(MrrEntity mrrEntity) {
-        return repository.save(mrrEntity);
+    public MrrEntity create(MrrEntity mrrEntity) {
+        namespaceService.mergeNamespaces(List.of(mrrEntity.getMrnNamespace()));
+        mrrEntity.setId(UUID.randomUUID().toString());
+        Map<String, Object> mrr = new HashMap<>();
+        mrr.put("id", mrrEntity.getId());
+        mrr.put("mrnNamespace", mrrEntity.getMrnNamespace());
+        mrr.put("endpoint", mrrEntity.getEndpoint());
+        Map<String, Object> owner = null;
+        if (mrrEntity.getOwner() != null) {
+            mrrEntity.getOwner().setId(UUID.randomUUID().toString());
+            owner = propertiesOf(mrrEntity.getOwner());
+        }
+        neo4jClient.query(CREATE_MRR).bind(mrr).to("mrr").bind(owner).to("owner").run();
+
+        MrrEntity delegation = delegationOf(mrrEntity);
+        TransactionHooks.afterCommit(() -> {
+            delegations.put(delegation.getMrnNamespace(), delegation);
+            publishDelegationChange(delegation.getMrnNamespace());
+        });
+        return mrrEntity;
+    }
+
+    // Only sets the endpoint property of the MRR node
+    @Transactional
+    public Optional<MrrEntity> updateEndpoint(String id, String endpoint) {
+        Optional<MrrEntity> updated = neo4jClient.query(UPDATE_ENDPOINT)
+                .bind(id).to("id")
+                .bind(endpoint).to("endpoint")
+                .fetchAs(MrrEntity.class)
+                .mappedBy((typeSystem, record) -> delegationOf(record))
+                .one();
+        updated.ifPresent(delegation -> TransactionHooks.afterCommit(() -> {
+            delegations.put(delegation.getMrnNamespace(), delegation);
+            publishDelegationChange(delegation.getMrnNamespace());
+        }));
+        return updated;
     }
 
     @Transactional
     public void delete(MrrEntity mrrEntity) {
         repository.delete(mrrEntity);
+        TransactionHooks.afterCommit(() -> removeDelegation(mrrEntity.getMrnNamespace()));
     }
 
     @Transactional
     public void deleteByMrnNamespace(String mrnNamespace) {
         repository.deleteByMrnNamespace(mrnNamespace);
+        TransactionHooks.afterCommit(() -> removeDelegation(mrnNamespace));
     }
 
     @Transactional
     public void deleteById(String id) {
+        Optional<String> mrnNamespace = repository.findMrnNamespaceById(id);
         repository.deleteById(id);
+        mrnNamespace.ifPresent(ns -> TransactionHooks.afterCommit(() -> removeDelegation(ns)));
     }
 
     public Optional<MrrEntity> getByMrnNamespace(String mrnNamespace) {
@@ -63,27 +189,92 @@ public class MrrService {
         return repository.findById(id);
     }
 
+    // Finds the MRR for the given MRN namespace or the nearest parent namespace that has one.
+    // The returned entity only carries the ID, MRN namespace and endpoint of the MRR.
     public Optional<MrrEntity> searchForEarlierMrr(String mrnNamespace) {
-        Optional<MrrEntity> maybeMrr = getByMrnNamespace(mrnNamespace);
-        while (maybeMrr.isEmpty() && mrnNamespace.contains(":")) {
-            mrnNamespace = mrnNamespace.substring(0, mrnNamespace.lastIndexOf(':'));
-            maybeMrr = getByMrnNamespace(mrnNamespace);
+        Optional<MrrEntity> maybeMrr;
+        if (delegationsLoaded) {
+            maybeMrr = delegations.findNearest(mrnNamespace);
+        } else {
+            String namespace = mrnNamespace;
+            maybeMrr = getByMrnNamespace(namespace);
+            while (maybeMrr.isEmpty() && namespace.contains(":")) {
+                namespace = namespace.substring(0, namespace.lastIndexOf(':'));
+                maybeMrr = getByMrnNamespace(namespace);
+            }
         }
+        walkDepth.record(NamespaceSyntaxService.walkDepth(mrnNamespace, maybeMrr.map(MrrEntity::getMrnNamespace).orElse(null)));
         return maybeMrr;
     }
 
-    public MrrEntity searchForLaterMrr(NamespaceEntity namespace) {
-        if (namespace == null) {
-            return null;
-        }
-        if (namespace.getMrr() != null) {
-            return namespace.getMrr();
+    // Whether the delegations are answered from memory, which does not block
+    public boolean isDelegationsLoaded() {
+        return delegationsLoaded;
+    }
+
+    // Finds an MRR for the given MRN namespace or for any namespace below it
+    public Optional<MrrEntity> searchForLaterMrr(String mrnNamespace) {
+        if (delegationsLoaded) {
+            return delegations.findAnyWithin(mrnNamespace);
         }
-        for (NamespaceEntity ns : namespace.getChildNamespaces()) {
-            MrrEntity mrr = searchForLaterMrr(ns);
-            if (mrr != null)
-                return mrr;
+        return repository.findFirstWithinNamespace(mrnNamespace);
+    }
+
+    // Another node has changed the delegation of the namespace. Its current state is read back from the database
+    // rather than taken from the message, so that messages arriving out of order cannot leave a stale delegation.
+    @EventListener
+    public void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.kind() != CacheInvalidation.Kind.DELEGATION || !delegationsLoaded)
+            return;
+        try {
+            Optional<MrrEntity> delegation = neo4jClient.query(DELEGATION)
+                    .bind(invalidation.key()).to("mrnNamespace")
+                    .fetchAs(MrrEntity.class)
+                    .mappedBy((typeSystem, record) -> delegationOf(record))
+                    .one();
+            if (delegation.isPresent()) {
+                delegations.put(invalidation.key(), delegation.get());
+            } else {
+                delegations.remove(invalidation.key());
+            }
+        } catch (RuntimeException e) {
+            // The trie can no longer be trusted, so answer from the database until it is reloaded
+            log.warn("Could not refresh the MRR delegation of \"{}\", falling back to database lookups: {}",
+                    invalidation.key(), e.getMessage());
+            delegationsLoaded = false;
         }
-        return null;
+    }
+
+    private void removeDelegation(String mrnNamespace) {
+        delegations.remove(mrnNamespace);
+        publishDelegationChange(mrnNamespace);
+    }
+
+    private void publishDelegationChange(String mrnNamespace) {
+        sharedCache.publish(CacheInvalidation.Kind.DELEGATION, mrnNamespace, null, null);
+    }
+
+    private static MrrEntity delegationOf(Record record) {
+        MrrEntity delegation = new MrrEntity(record.get("mrnNamespace").asString(), record.get("endpoint").asString(null), null);
+        delegation.setId(record.get("id").asString());
+        return delegation;
+    }
+
+    private static Map<String, Object> propertiesOf(Owner owner) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("id", owner.getId());
+        properties.put("name", owner.getName());
+        properties.put("email", owner.getEmail());
+        properties.put("phone", owner.getPhone());
+        properties.put("url", owner.getUrl());
+        properties.put("address", owner.getAddress());
+        properties.put("country", owner.getCountry());
+        return properties;
+    }
+
+    private static MrrEntity delegationOf(MrrEntity mrrEntity) {
+        MrrEntity delegation = new MrrEntity(mrrEntity.getMrnNamespace(), mrrEntity.getEndpoint(), null);
+        delegation.setId(mrrEntity.getId());
+        return delegation;
     }
 }
@@ -16,52 +16,60 @@
 
 package org.iala_aism.mrr.services;
 
-import org.iala_aism.mrr.model.NamespaceEntity;
-import org.iala_aism.mrr.model.NamespaceSyntax;
-import org.iala_aism.mrr.repositories.NamespaceRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.neo4j.core.Neo4jClient;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
 @Service
 public class NamespaceService {
 
-    private NamespaceRepository repository;
+    // Runs as a single statement in the transaction of the caller. The MERGE on the unique mrnNamespace locks the index
+    // entry, so concurrent registrations under the same new namespace reuse one node instead of each creating their own.
+    static final String MERGE_NAMESPACES = """
+            UNWIND $namespaces AS ns
+            MERGE (n:Namespace {mrnNamespace: ns}) ON CREATE SET n.id = randomUUID()
+            WITH count(n) AS merged
+            UNWIND $edges AS edge
+            MATCH (child:Namespace {mrnNamespace: edge.child})
+            MATCH (parent:Namespace {mrnNamespace: edge.parent})
+            MERGE (child)-[:EXTENDS]->(parent)
+            """;
 
-    @Autowired
-    public void setRepository(NamespaceRepository repository) {
-        this.repository = repository;
-    }
-
-    public NamespaceEntity getNamespaceByMrn(String mrn) {
-        return repository.findByMrnNamespace(mrn);
-    }
+    private Neo4jClient neo4jClient;
 
-    // Finds the syntax definition, if one exists, for the given MRN
-    public NamespaceSyntax getNamespaceSyntaxByMrn(String mrn) {
-        NamespaceEntity namespace = this.getNamespaceByMrn(mrn);
-        // If a namespace entity doesn't exist for the given MRN we need to find one higher up in the tree
-        while (namespace == null) {
-            mrn = mrn.substring(0, mrn.lastIndexOf(':'));
-            namespace = this.getNamespaceByMrn(mrn);
-        }
-        NamespaceSyntax syntax = null;
-        while (syntax == null) {
-            syntax = namespace.getNamespaceSyntax();
-            namespace = namespace.getParentNamespace();
-        }
-        return syntax;
+    @Autowired
+    public void setNeo4jClient(Neo4jClient neo4jClient) {
+        this.neo4jClient = neo4jClient;
     }
 
-    public NamespaceEntity createNamespace(String mrn) {
-        NamespaceEntity namespaceEntity = getNamespaceByMrn(mrn);
-        if (namespaceEntity != null) {
-            return namespaceEntity;
-        }
-        NamespaceEntity entity = new NamespaceEntity(mrn);
-        if (mrn.contains(":")) {
-            String namespace = mrn.substring(0, mrn.lastIndexOf(':'));
-            entity.setParentNamespace(createNamespace(namespace));
+    // Creates the namespaces of all the given MRNs and their parents in bulk, reusing the ones that already exist
+    public void mergeNamespaces(Collection<String> mrns) {
+        // Sorted so that concurrent transactions take their locks in the same order and cannot deadlock on each other
+        Set<String> namespaces = new TreeSet<>();
+        Map<String, String> parents = new TreeMap<>();
+        for (String mrn : mrns) {
+            String namespace = mrn;
+            while (namespaces.add(namespace) && namespace.contains(":")) {
+                String parent = namespace.substring(0, namespace.lastIndexOf(':'));
+                parents.put(namespace, parent);
+                namespace = parent;
+            }
         }
-        return entity;
+        if (namespaces.isEmpty())
+            return;
+        List<Map<String, String>> edges = new ArrayList<>(parents.size());
+        parents.forEach((child, parent) -> edges.add(Map.of("child", child, "parent", parent)));
+        neo4jClient.query(MERGE_NAMESPACES)
+                .bind(new ArrayList<>(namespaces)).to("namespaces")
+                .bind(edges).to("edges")
+                .run();
     }
 }
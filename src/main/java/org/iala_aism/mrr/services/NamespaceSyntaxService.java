@@ -16,40 +16,124 @@
 
 package org.iala_aism.mrr.services;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.iala_aism.mrr.model.dto.NamespaceSyntaxDTO;
+import org.iala_aism.mrr.model.dto.OwnerDTO;
 import org.iala_aism.mrr.repositories.NamespaceSyntaxRepository;
+import org.iala_aism.mrr.utils.NamespaceTrie;
+import org.neo4j.driver.Value;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.neo4j.core.Neo4jClient;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
 @Service
 public class NamespaceSyntaxService {
 
+    // The syntax of the longest of the given namespaces that has one, read without its relationships
+    static final String NEAREST_SYNTAX = """
+            UNWIND $namespaces AS namespace
+            MATCH (s:NamespaceSyntax {mrnNamespace: namespace})
+            OPTIONAL MATCH (o:Owner)-[:OWNS_NAMESPACE]->(s)
+            RETURN s.mrnNamespace AS mrnNamespace, s.abnfSyntax AS abnfSyntax, s.regex AS regex, s.id AS id,
+                   s.lastModified AS lastModified, o {.name, .email, .phone, .url, .address, .country} AS owner
+            ORDER BY size(namespace) DESC
+            LIMIT 1
+            """;
+
+    static final String STAMP_SYNTAX = "MATCH (s:NamespaceSyntax {mrnNamespace: $mrnNamespace}) SET s.lastModified = timestamp()";
+
     private NamespaceSyntaxRepository repository;
+    private NamespaceSyntaxValidationService validationService;
+    private Neo4jClient neo4jClient;
+    private DistributionSummary walkDepth;
 
     @Autowired
     public void setRepository(NamespaceSyntaxRepository repository) {
         this.repository = repository;
     }
 
-    public NamespaceSyntax getNamespaceSyntax(String mrnNamespace) {
-        return repository.findByMrnNamespace(mrnNamespace);
+    @Autowired
+    public void setValidationService(NamespaceSyntaxValidationService validationService) {
+        this.validationService = validationService;
+    }
+
+    @Autowired
+    public void setNeo4jClient(Neo4jClient neo4jClient) {
+        this.neo4jClient = neo4jClient;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.walkDepth = walkDepthSummary("syntax", meterRegistry);
     }
 
     public NamespaceSyntax findNamespaceSyntaxForMrn(String mrn) {
-        NamespaceSyntax syntax = repository.findByMrnNamespace(mrn);
+        String namespace = mrn;
+        NamespaceSyntax syntax = repository.findByMrnNamespace(namespace);
         while (syntax == null) {
-            if (mrn.lastIndexOf(':') > 0) {
-                mrn = mrn.substring(0, mrn.lastIndexOf(':'));
-                syntax = repository.findByMrnNamespace(mrn);
+            if (namespace.lastIndexOf(':') > 0) {
+                namespace = namespace.substring(0, namespace.lastIndexOf(':'));
+                syntax = repository.findByMrnNamespace(namespace);
             } else {
                 break;
             }
         }
+        walkDepth.record(walkDepth(mrn, syntax != null ? namespace : null));
+        return syntax;
+    }
+
+    // Finds the syntax that applies to the MRN, which is the one of the MRN itself or else of its nearest parent
+    public Optional<NamespaceSyntaxDTO> findNearestSyntax(String mrn) {
+        Optional<NamespaceSyntaxDTO> syntax = neo4jClient.query(NEAREST_SYNTAX)
+                .bind(List.copyOf(namespacesOf(List.of(mrn)))).to("namespaces")
+                .fetchAs(NamespaceSyntaxDTO.class)
+                .mappedBy((typeSystem, record) -> {
+                    Value owner = record.get("owner");
+                    return new NamespaceSyntaxDTO(record.get("mrnNamespace").asString(), record.get("abnfSyntax").asString(null),
+                            record.get("regex").asString(null),
+                            owner.isNull() ? null : new OwnerDTO(owner.get("name").asString(null), owner.get("email").asString(null),
+                                    owner.get("phone").asString(null), owner.get("url").asString(null),
+                                    owner.get("address").asString(null), owner.get("country").asString(null)),
+                            record.get("id").asString(null),
+                            record.get("lastModified").isNull() ? null : record.get("lastModified").asLong());
+                })
+                .one();
+        walkDepth.record(walkDepth(mrn, syntax.map(NamespaceSyntaxDTO::getMrnNamespace).orElse(null)));
         return syntax;
     }
 
+    // Called when the syntax of the namespace has been (re)created by the syntax service, which writes the node itself
+    public void syntaxChanged(String mrnNamespace) {
+        neo4jClient.query(STAMP_SYNTAX).bind(mrnNamespace).to("mrnNamespace").run();
+        validationService.syntaxChanged(mrnNamespace);
+    }
+
+    // Fetches the syntax definitions of all the given MRNs and their parents with a single query.
+    // The syntax that applies to an MRN is the nearest one in the returned trie.
+    public NamespaceTrie<NamespaceSyntax> findNamespaceSyntaxesForMrns(Collection<String> mrns) {
+        Set<String> namespaces = namespacesOf(mrns);
+        NamespaceTrie<NamespaceSyntax> syntaxes = new NamespaceTrie<>();
+        if (!namespaces.isEmpty()) {
+            for (NamespaceSyntax syntax : repository.findAllByMrnNamespaceIn(namespaces)) {
+                syntaxes.put(syntax.getMrnNamespace(), syntax);
+            }
+        }
+        return syntaxes;
+    }
+
     public Page<NamespaceSyntax> findNamespaceSyntaxesUnderNamespace(String namespace, Pageable pageable) {
         return repository.findAllByMrnNamespaceStartingWith(namespace, pageable);
     }
@@ -57,4 +141,55 @@ public class NamespaceSyntaxService {
     public Page<NamespaceSyntax> getAll(Pageable pageable) {
         return repository.findAll(pageable);
     }
+
+    // Returns up to limit syntax definitions under the namespace, ordered by namespace and ID, that come after the given ones.
+    // An empty namespace matches all syntax definitions and an empty after namespace starts from the beginning.
+    public List<NamespaceSyntax> findNamespaceSyntaxesUnderNamespaceAfter(String namespace, String afterNamespace, String afterId, int limit) {
+        List<String> ids = repository.findIdsByMrnNamespaceStartingWithAfter(namespace, afterNamespace, afterId, limit);
+        if (ids.isEmpty())
+            return List.of();
+        // The page is found using the index, after which the syntaxes are loaded with their relationships
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        return repository.findAllById(ids).stream()
+                .sorted(Comparator.comparing(syntax -> positions.get(syntax.getId())))
+                .toList();
+    }
+
+    // The given MRNs and all their parents
+    public static Set<String> namespacesOf(Collection<String> mrns) {
+        Set<String> namespaces = new HashSet<>();
+        for (String mrn : mrns) {
+            String namespace = mrn;
+            while (namespaces.add(namespace) && namespace.lastIndexOf(':') > 0) {
+                namespace = namespace.substring(0, namespace.lastIndexOf(':'));
+            }
+        }
+        return namespaces;
+    }
+
+    // How many levels were walked up from the MRN to the namespace that answered it, or to the root if none did
+    public static int walkDepth(String mrn, String namespace) {
+        return segments(mrn) - (namespace != null ? segments(namespace) : 0);
+    }
+
+    // The depth of the walks of a lookup, which is named by a fixed tag so that the number of series stays bounded. The
+    // first bucket holds the lookups that were answered by the MRN itself, as the boundaries must be greater than 0.
+    static DistributionSummary walkDepthSummary(String lookup, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("mrr.namespace.walk.depth")
+                .description("How many namespace levels were walked up from an MRN to the namespace that answered it")
+                .tag("lookup", lookup)
+                .serviceLevelObjectives(0.5, 1, 2, 3, 4, 6, 8)
+                .register(meterRegistry);
+    }
+
+    private static int segments(String namespace) {
+        int segments = 1;
+        for (int i = namespace.indexOf(':'); i >= 0; i = namespace.indexOf(':', i + 1)) {
+            segments++;
+        }
+        return segments;
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.CacheInvalidation;
+import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+@Service
+@Slf4j
+public class NamespaceSyntaxValidationService {
+
+    // Compiled patterns keyed by the ID of the syntax they were compiled from
+    private final Map<String, CompiledSyntax> patterns = new ConcurrentHashMap<>();
+    private Counter hits;
+    private Counter misses;
+    private SharedCacheService sharedCache;
+
+    @Autowired
+    public void setSharedCache(SharedCacheService sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("mrr.syntax.pattern.cache")
+                .description("Lookups of compiled namespace syntax patterns")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("mrr.syntax.pattern.cache")
+                .description("Lookups of compiled namespace syntax patterns")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("mrr.syntax.pattern.cache.size", patterns, Map::size)
+                .description("The number of compiled namespace syntax patterns")
+                .register(meterRegistry);
+    }
+
+    public boolean matches(NamespaceSyntax syntax, String mrn) {
+        return getPattern(syntax).matcher(mrn).matches();
+    }
+
+    public Pattern getPattern(NamespaceSyntax syntax) {
+        String key = syntax.getId() != null ? syntax.getId() : syntax.getMrnNamespace();
+        String regex = syntax.getRegex();
+        int regexHash = regex.hashCode();
+        CompiledSyntax compiled = patterns.get(key);
+        if (compiled != null && compiled.regexHash() == regexHash && compiled.regex().equals(regex)) {
+            hits.increment();
+            return compiled.pattern();
+        }
+        // Either we have not seen this syntax before or its regex has changed since it was compiled
+        misses.increment();
+        log.debug("Compiling the regex of the syntax for namespace \"{}\"", syntax.getMrnNamespace());
+        compiled = new CompiledSyntax(syntax.getMrnNamespace(), regex, regexHash, Pattern.compile("^" + regex + "$"));
+        patterns.put(key, compiled);
+        return compiled.pattern();
+    }
+
+    public void evict(String syntaxId) {
+        patterns.remove(syntaxId);
+    }
+
+    public void evictNamespace(String mrnNamespace) {
+        patterns.values().removeIf(compiled -> mrnNamespace.equals(compiled.mrnNamespace()));
+    }
+
+    // Evicts the patterns of a namespace whose syntax has been (re)created, on this node and on all others
+    public void syntaxChanged(String mrnNamespace) {
+        evictNamespace(mrnNamespace);
+        sharedCache.publish(CacheInvalidation.Kind.SYNTAX, mrnNamespace, null, null);
+    }
+
+    @EventListener
+    public void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.kind() == CacheInvalidation.Kind.SYNTAX)
+            evictNamespace(invalidation.key());
+    }
+
+    private record CompiledSyntax(String mrnNamespace, String regex, int regexHash, Pattern pattern) {
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.ArchiveEntry;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Exports and imports the whole registry graph as newline delimited JSON, see ArchiveEntry
+@Service
+@Slf4j
+public class RegistryArchiveService {
+
+    // The node labels in the order they are exported
+    static final List<String> LABELS = List.of("Owner", "Namespace", "NamespaceSyntax", "MRR", "MaritimeResource");
+
+    // The relationship types mapped to the labels of their start and end nodes
+    static final Map<String, List<String>> RELATIONSHIPS = orderedMap(
+            "EXTENDS", List.of("Namespace", "Namespace"),
+            "DESCRIBES", List.of("NamespaceSyntax", "Namespace"),
+            "CONTAINS", List.of("MRR", "Namespace"),
+            "OWNS_NAMESPACE", List.of("Owner", "NamespaceSyntax"),
+            "OWNS_MRR", List.of("Owner", "MRR"),
+            "FOLLOWS", List.of("MaritimeResource", "Namespace"));
+
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(5);
+
+    private Driver driver;
+    private SchemaMigrationService schemaMigrationService;
+    private ObjectMapper mapper;
+
+    @Value("${org.iala_aism.mrr.archive.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${org.iala_aism.mrr.archive.import-threads:0}")
+    private int importThreads;
+
+    @Autowired
+    public void setDriver(Driver driver) {
+        this.driver = driver;
+    }
+
+    @Autowired
+    public void setSchemaMigrationService(SchemaMigrationService schemaMigrationService) {
+        this.schemaMigrationService = schemaMigrationService;
+    }
+
+    @Autowired
+    public void setMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    // Streams all nodes and then all relationships of the registry to the given stream
+    public ArchiveStats exportArchive(OutputStream out) throws IOException {
+        Progress progress = new Progress("Exported");
+        SessionConfig sessionConfig = SessionConfig.builder()
+                .withDefaultAccessMode(AccessMode.READ)
+                .withFetchSize(batchSize)
+                .build();
+        try (Session session = driver.session(sessionConfig)) {
+            writeLine(out, ArchiveEntry.header());
+            for (String label : LABELS) {
+                Result result = session.run("MATCH (n:" + label + ") RETURN properties(n) AS properties");
+                while (result.hasNext()) {
+                    writeLine(out, ArchiveEntry.node(label, result.next().get("properties").asMap()));
+                    progress.addNodes(1);
+                }
+            }
+            for (Map.Entry<String, List<String>> relationship : RELATIONSHIPS.entrySet()) {
+                Result result = session.run("MATCH (a:" + relationship.getValue().get(0) + ")-[:" + relationship.getKey() +
+                        "]->(b:" + relationship.getValue().get(1) + ") RETURN a.id AS from, b.id AS to");
+                while (result.hasNext()) {
+                    Record record = result.next();
+                    writeLine(out, ArchiveEntry.relationship(relationship.getKey(), record.get("from").asString(), record.get("to").asString()));
+                    progress.addRelationships(1);
+                }
+            }
+        }
+        out.flush();
+        return progress.finish();
+    }
+
+    // Reads an archive and writes it in parallel batches. Nodes are matched on their ID so an import can be repeated.
+    public ArchiveStats importArchive(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ArchiveEntry header = readEntry(reader.readLine());
+        if (header == null || !ArchiveEntry.FORMAT.equals(header.format()) || !Integer.valueOf(ArchiveEntry.FORMAT_VERSION).equals(header.version()))
+            throw new IOException("The input is not a supported registry archive");
+
+        // The constraints on the IDs that nodes are matched on are part of the schema
+        schemaMigrationService.migrate();
+
+        Progress progress = new Progress("Imported");
+        int threads = importThreads > 0 ? importThreads : Runtime.getRuntime().availableProcessors();
+        ImportWorkers workers = new ImportWorkers(threads);
+        Map<String, List<Map<String, Object>>> batches = new HashMap<>();
+        boolean readingRelationships = false;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ArchiveEntry entry = readEntry(line);
+                if (entry == null)
+                    continue;
+                if (entry.node() != null) {
+                    if (readingRelationships)
+                        throw new IOException("Nodes must come before relationships in a registry archive");
+                    if (!LABELS.contains(entry.node()))
+                        throw new IOException("Unknown node label in registry archive: " + entry.node());
+                    add(batches, entry.node(), entry.properties(), workers, progress);
+                } else if (entry.relationship() != null) {
+                    if (!RELATIONSHIPS.containsKey(entry.relationship()))
+                        throw new IOException("Unknown relationship type in registry archive: " + entry.relationship());
+                    if (!readingRelationships) {
+                        // All nodes have to exist before relationships between them can be created
+                        flush(batches, workers, progress);
+                        workers.awaitAll();
+                        readingRelationships = true;
+                    }
+                    add(batches, entry.relationship(), Map.of("from", entry.from(), "to", entry.to()), workers, progress);
+                }
+            }
+            flush(batches, workers, progress);
+            workers.awaitAll();
+        } finally {
+            workers.shutdown();
+        }
+        return progress.finish();
+    }
+
+    private void add(Map<String, List<Map<String, Object>>> batches, String key, Map<String, Object> row,
+                     ImportWorkers workers, Progress progress) throws IOException {
+        List<Map<String, Object>> batch = batches.computeIfAbsent(key, k -> new ArrayList<>(batchSize));
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            batches.remove(key);
+            submit(key, batch, workers, progress);
+        }
+    }
+
+    private void flush(Map<String, List<Map<String, Object>>> batches, ImportWorkers workers, Progress progress) throws IOException {
+        for (Map.Entry<String, List<Map<String, Object>>> batch : batches.entrySet()) {
+            submit(batch.getKey(), batch.getValue(), workers, progress);
+        }
+        batches.clear();
+    }
+
+    private void submit(String key, List<Map<String, Object>> rows, ImportWorkers workers, Progress progress) throws IOException {
+        if (LABELS.contains(key)) {
+            String query = "UNWIND $rows AS row MERGE (n:" + key + " {id: row.id}) SET n = row";
+            workers.submit(() -> {
+                write(query, rows);
+                progress.addNodes(rows.size());
+            });
+        } else {
+            List<String> labels = RELATIONSHIPS.get(key);
+            String query = "UNWIND $rows AS row MATCH (a:" + labels.get(0) + " {id: row.from}) " +
+                    "MATCH (b:" + labels.get(1) + " {id: row.to}) MERGE (a)-[:" + key + "]->(b)";
+            workers.submit(() -> {
+                write(query, rows);
+                progress.addRelationships(rows.size());
+            });
+        }
+    }
+
+    private void write(String query, List<Map<String, Object>> rows) {
+        // Write transactions are retried by the driver on transient errors such as deadlocks
+        try (Session session = driver.session()) {
+            session.executeWrite(tx -> tx.run(query, Map.of("rows", rows)).consume());
+        }
+    }
+
+    private ArchiveEntry readEntry(String line) throws IOException {
+        if (line == null || line.isBlank())
+            return null;
+        return mapper.readValue(line, ArchiveEntry.class);
+    }
+
+    private void writeLine(OutputStream out, ArchiveEntry entry) throws IOException {
+        out.write(mapper.writeValueAsBytes(entry));
+        out.write('\n');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Map<String, V> orderedMap(Object... keysAndValues) {
+        Map<String, V> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            map.put((String) keysAndValues[i], (V) keysAndValues[i + 1]);
+        }
+        return map;
+    }
+
+    public record ArchiveStats(long nodes, long relationships, Duration duration) {
+        public double entriesPerSecond() {
+            double seconds = Math.max(duration.toMillis(), 1) / 1000.0;
+            return (nodes + relationships) / seconds;
+        }
+    }
+
+    // Runs batches on a fixed number of threads while bounding the number of batches held in memory
+    private static final class ImportWorkers {
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        ImportWorkers(int threads) {
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.permits = new Semaphore(threads * 2);
+        }
+
+        void submit(Runnable batch) throws IOException {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while importing registry archive", e);
+            }
+            futures.add(executor.submit(() -> {
+                try {
+                    batch.run();
+                } finally {
+                    permits.release();
+                }
+            }));
+            futures.removeIf(this::completedSuccessfully);
+        }
+
+        void awaitAll() throws IOException {
+            for (Future<?> future : futures) {
+                await(future);
+            }
+            futures.clear();
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+
+        private boolean completedSuccessfully(Future<?> future) {
+            if (!future.isDone())
+                return false;
+            try {
+                await(future);
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e.getCause());
+            }
+            return true;
+        }
+
+        private static void await(Future<?> future) throws IOException {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while importing registry archive", e);
+            } catch (ExecutionException e) {
+                throw new IOException("A batch of the registry archive could not be imported", e.getCause());
+            }
+        }
+    }
+
+    private static final class Progress {
+        private final String action;
+        private final long start = System.nanoTime();
+        private final AtomicLong nodes = new AtomicLong();
+        private final AtomicLong relationships = new AtomicLong();
+        private final AtomicLong lastReport = new AtomicLong(start);
+
+        Progress(String action) {
+            this.action = action;
+        }
+
+        void addNodes(long count) {
+            nodes.addAndGet(count);
+            report();
+        }
+
+        void addRelationships(long count) {
+            relationships.addAndGet(count);
+            report();
+        }
+
+        ArchiveStats finish() {
+            ArchiveStats stats = new ArchiveStats(nodes.get(), relationships.get(), Duration.ofNanos(System.nanoTime() - start));
+            log.info("{} {} nodes and {} relationships in {} ({} entries/s)", action, stats.nodes(), stats.relationships(),
+                    stats.duration(), Math.round(stats.entriesPerSecond()));
+            return stats;
+        }
+
+        private void report() {
+            long now = System.nanoTime();
+            long last = lastReport.get();
+            if (now - last >= PROGRESS_INTERVAL.toNanos() && lastReport.compareAndSet(last, now)) {
+                double seconds = (now - start) / 1e9;
+                long total = nodes.get() + relationships.get();
+                log.info("{} {} nodes and {} relationships so far ({} entries/s)", action, nodes.get(), relationships.get(),
+                        Math.round(total / seconds));
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.iala_aism.mrr.model.CacheInvalidation;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.utils.TransactionHooks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// Caches the resolution of single resources, first in a near cache on this node and then in the shared cache in Redis.
+// Lookups that found nothing are only cached near, so every write has to invalidate the keys of the MRN and version
+// it changes, both here and, through the shared cache, on the other nodes.
+@Service
+public class ResourceResolutionCache {
+
+    private static final String SHARED_PREFIX = "mrr:resources:";
+
+    private Cache<String, Optional<MaritimeResourceDTO>> cache;
+    private SharedCacheService sharedCache;
+
+    @Value("${org.iala_aism.mrr.cache.resources.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${org.iala_aism.mrr.cache.resources.time-to-live:PT10M}")
+    private Duration timeToLive;
+
+    @Value("${org.iala_aism.mrr.cache.resources.shared-time-to-live:PT1H}")
+    private Duration sharedTimeToLive;
+
+    @Autowired
+    public void setSharedCache(SharedCacheService sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "mrr.resources");
+    }
+
+    public Optional<MaritimeResourceDTO> getById(String id, Supplier<Optional<MaritimeResourceDTO>> loader) {
+        return cache.get(idKey(id), key -> load(key, loader));
+    }
+
+    public Optional<MaritimeResourceDTO> getByMrnAndVersion(String mrn, String version, Supplier<Optional<MaritimeResourceDTO>> loader) {
+        return cache.get(versionKey(mrn, version), key -> load(key, loader));
+    }
+
+    public Optional<MaritimeResourceDTO> getLatestByMrn(String mrn, Supplier<Optional<MaritimeResourceDTO>> loader) {
+        return cache.get(latestKey(mrn), key -> load(key, loader));
+    }
+
+    // Invalidates the entries of a written resource. The ID is only needed when an existing resource was changed.
+    // The near entries are invalidated right away, so that the writing transaction does not read them, and again after
+    // the commit, since a read running concurrently with the transaction may have loaded the old state in between.
+    // The shared entries are invalidated before the other nodes are told to drop theirs, so that they cannot reload them,
+    // and a load that read the old state before the commit cannot store it in the shared cache afterwards.
+    public void invalidate(String mrn, String version, String id) {
+        invalidateNear(mrn, version, id);
+        TransactionHooks.afterCommit(() -> {
+            invalidateNear(mrn, version, id);
+            sharedCache.invalidate(keysOf(mrn, version, id).stream().map(key -> SHARED_PREFIX + key).toList());
+            sharedCache.publish(CacheInvalidation.Kind.RESOURCE, mrn, version, id);
+        });
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // Handles the invalidations published by the other nodes
+    @EventListener
+    public void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.kind() == CacheInvalidation.Kind.RESOURCE)
+            invalidateNear(invalidation.key(), invalidation.version(), invalidation.id());
+    }
+
+    private Optional<MaritimeResourceDTO> load(String key, Supplier<Optional<MaritimeResourceDTO>> loader) {
+        SharedCacheService.Entry<MaritimeResourceDTO> shared = sharedCache.get(SHARED_PREFIX + key, MaritimeResourceDTO.class);
+        if (shared.value().isPresent())
+            return shared.value();
+        Optional<MaritimeResourceDTO> resource = loader.get();
+        resource.ifPresent(r -> sharedCache.put(SHARED_PREFIX + key, shared.generation(), r, sharedTimeToLive));
+        return resource;
+    }
+
+    private void invalidateNear(String mrn, String version, String id) {
+        cache.invalidateAll(keysOf(mrn, version, id));
+    }
+
+    private static List<String> keysOf(String mrn, String version, String id) {
+        return id != null ? List.of(latestKey(mrn), versionKey(mrn, version), idKey(id))
+                : List.of(latestKey(mrn), versionKey(mrn, version));
+    }
+
+    private static String idKey(String id) {
+        return "i:" + id;
+    }
+
+    private static String versionKey(String mrn, String version) {
+        return "v:" + mrn + "/" + version;
+    }
+
+    private static String latestKey(String mrn) {
+        return "l:" + mrn;
+    }
+}
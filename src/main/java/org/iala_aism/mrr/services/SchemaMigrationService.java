@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.utils.SemanticVersion;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Query;
+import org.neo4j.driver.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Brings the constraints and indexes of the database up to date. Every migration is applied once and is recorded as a
+// __MrrSchemaMigration node. The statements of a migration are idempotent, so a migration that was interrupted can
+// simply be applied again.
+@Service
+@Slf4j
+public class SchemaMigrationService {
+
+    public static final List<SchemaMigration> MIGRATIONS = List.of(
+            new SchemaMigration(1, "Order resources by their semantic version", List.of(
+                    new Query("CREATE INDEX maritime_resource_mrn_version_order IF NOT EXISTS " +
+                            "FOR (r:MaritimeResource) ON (r.mrn, r.versionMajor, r.versionMinor, r.versionPatch)"),
+                    // Resources registered before the version components were stored need to have them set
+                    new Query("MATCH (r:MaritimeResource) WHERE r.versionMajor IS NULL AND r.version =~ $versionPattern " +
+                            "CALL { WITH r WITH r, split(r.version, '.') AS parts " +
+                            "SET r.versionMajor = toInteger(parts[0]), r.versionMinor = toInteger(parts[1]), " +
+                            "r.versionPatch = toInteger(parts[2]) } IN TRANSACTIONS OF 10000 ROWS",
+                            Map.of("versionPattern", SemanticVersion.VERSION_PATTERN.pattern())))),
+            new SchemaMigration(2, "Make IDs and MRNs unique", List.of(
+                    // Namespaces used to be created without checking for an existing one, so the duplicates of a
+                    // namespace are merged into the one with the lowest ID before its MRN can be made unique
+                    new Query("MATCH (n:Namespace) WHERE n.mrnNamespace IS NOT NULL WITH n ORDER BY n.id " +
+                            "WITH n.mrnNamespace AS mrnNamespace, collect(n) AS nodes WHERE size(nodes) > 1 " +
+                            "WITH head(nodes) AS kept, tail(nodes) AS duplicates UNWIND duplicates AS duplicate " +
+                            "CALL { WITH kept, duplicate MATCH (duplicate)-[:EXTENDS]->(parent) MERGE (kept)-[:EXTENDS]->(parent) } " +
+                            "CALL { WITH kept, duplicate MATCH (child)-[:EXTENDS]->(duplicate) MERGE (child)-[:EXTENDS]->(kept) } " +
+                            "CALL { WITH kept, duplicate MATCH (s)-[:DESCRIBES]->(duplicate) MERGE (s)-[:DESCRIBES]->(kept) } " +
+                            "CALL { WITH kept, duplicate MATCH (m)-[:CONTAINS]->(duplicate) MERGE (m)-[:CONTAINS]->(kept) } " +
+                            "CALL { WITH kept, duplicate MATCH (r)-[:FOLLOWS]->(duplicate) MERGE (r)-[:FOLLOWS]->(kept) } " +
+                            "DETACH DELETE duplicate"),
+                    // Replaced by the index backing the uniqueness constraint on the MRN and version
+                    new Query("DROP INDEX maritime_resource_mrn_version IF EXISTS"),
+                    new Query("CREATE CONSTRAINT maritime_resource_mrn_version_unique IF NOT EXISTS " +
+                            "FOR (r:MaritimeResource) REQUIRE (r.mrn, r.version) IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT namespace_mrn_namespace_unique IF NOT EXISTS " +
+                            "FOR (n:Namespace) REQUIRE n.mrnNamespace IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT mrr_mrn_namespace_unique IF NOT EXISTS " +
+                            "FOR (m:MRR) REQUIRE m.mrnNamespace IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT namespace_syntax_mrn_namespace_unique IF NOT EXISTS " +
+                            "FOR (s:NamespaceSyntax) REQUIRE s.mrnNamespace IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT owner_id IF NOT EXISTS FOR (n:Owner) REQUIRE n.id IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT namespace_id IF NOT EXISTS FOR (n:Namespace) REQUIRE n.id IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT namespace_syntax_id IF NOT EXISTS FOR (n:NamespaceSyntax) REQUIRE n.id IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT mrr_id IF NOT EXISTS FOR (n:MRR) REQUIRE n.id IS UNIQUE"),
+                    new Query("CREATE CONSTRAINT maritime_resource_id IF NOT EXISTS FOR (n:MaritimeResource) REQUIRE n.id IS UNIQUE"))),
+            new SchemaMigration(3, "Index the prefix and cursor queries", List.of(
+                    new Query("CREATE RANGE INDEX maritime_resource_mrn IF NOT EXISTS FOR (r:MaritimeResource) ON (r.mrn)"),
+                    new Query("CREATE INDEX namespace_syntax_namespace_id IF NOT EXISTS " +
+                            "FOR (s:NamespaceSyntax) ON (s.mrnNamespace, s.id)"))),
+            new SchemaMigration(4, "Stamp resources and syntax definitions with their modification time", List.of(
+                    // What was stored before is treated as modified now, which at worst makes clients fetch it once more
+                    new Query("MATCH (r:MaritimeResource) WHERE r.lastModified IS NULL " +
+                            "CALL { WITH r SET r.lastModified = timestamp() } IN TRANSACTIONS OF 10000 ROWS"),
+                    new Query("MATCH (s:NamespaceSyntax) WHERE s.lastModified IS NULL " +
+                            "CALL { WITH s SET s.lastModified = timestamp() } IN TRANSACTIONS OF 10000 ROWS")))
+    );
+
+    private Driver driver;
+
+    @Autowired
+    public void setDriver(Driver driver) {
+        this.driver = driver;
+    }
+
+    // Applies the migrations that have not been applied yet and returns how many were applied
+    public int migrate() {
+        try (Session session = driver.session()) {
+            session.run("CREATE CONSTRAINT mrr_schema_migration_version IF NOT EXISTS " +
+                    "FOR (m:__MrrSchemaMigration) REQUIRE m.version IS UNIQUE").consume();
+            Set<Integer> applied = new HashSet<>(session.run("MATCH (m:__MrrSchemaMigration) RETURN m.version AS version")
+                    .list(r -> r.get("version").asInt()));
+
+            int count = 0;
+            for (SchemaMigration migration : MIGRATIONS) {
+                if (applied.contains(migration.version()))
+                    continue;
+                log.info("Applying schema migration {}: {}", migration.version(), migration.description());
+                // Schema changes cannot be mixed with writes in a transaction, so each statement runs on its own
+                for (Query statement : migration.statements()) {
+                    session.run(statement).consume();
+                }
+                session.run("MERGE (m:__MrrSchemaMigration {version: $version}) " +
+                                "SET m.description = $description, m.appliedAt = datetime()",
+                        Map.of("version", migration.version(), "description", migration.description())).consume();
+                count++;
+            }
+            // Constraints and indexes are populated in the background, so wait for them before they are relied on
+            if (count > 0)
+                session.run("CALL db.awaitIndexes(300)").consume();
+            return count;
+        }
+    }
+
+    public record SchemaMigration(int version, String description, List<Query> statements) {
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.CacheInvalidation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// The part of the caches that is shared by all nodes through Redis. Values are stored as JSON, and invalidations are
+// broadcast on a channel and turned into local CacheInvalidation events on every other node. Redis being unavailable
+// only costs the sharing, so its failures are logged and otherwise ignored. After a failure Redis is left alone for a
+// while, so that an outage does not hold up every request, and the keys that could not be invalidated meanwhile are
+// invalidated once it is back.
+//
+// Every key has a generation that is incremented when it is invalidated. A value is only stored if the generation is
+// still the one read before the value was loaded, so that a load that read the old state cannot store it after the
+// invalidation.
+@Service
+@Slf4j
+public class SharedCacheService implements MessageListener {
+
+    public static final String CHANNEL = "mrr:cache-invalidation";
+
+    private static final String GENERATION_PREFIX = "mrr:generation:";
+    // Longer than any load takes, as a load that read the generation before it expired could otherwise store its value
+    private static final Duration GENERATION_TIME_TO_LIVE = Duration.ofDays(1);
+    private static final int MAX_PENDING_INVALIDATIONS = 100_000;
+
+    // KEYS: the key and its generation, ARGV: the generation read before loading (empty if none), the value, the TTL
+    private static final RedisScript<Boolean> PUT_IF_UNCHANGED = RedisScript.of("""
+            local generation = redis.call('GET', KEYS[2]) or ''
+            if generation ~= ARGV[1] then return false end
+            redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            return true
+            """, Boolean.class);
+    // KEYS: pairs of a key and its generation, ARGV: the TTL of the generations
+    private static final RedisScript<Long> INVALIDATE = RedisScript.of("""
+            for i = 1, #KEYS, 2 do
+                redis.call('DEL', KEYS[i])
+                redis.call('INCR', KEYS[i + 1])
+                redis.call('PEXPIRE', KEYS[i + 1], ARGV[1])
+            end
+            return #KEYS / 2
+            """, Long.class);
+
+    private final Set<String> pendingInvalidations = ConcurrentHashMap.newKeySet();
+    private volatile long unavailableUntil;
+
+    private StringRedisTemplate redisTemplate;
+    private ObjectMapper mapper;
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${org.iala_aism.mrr.node-id:#{T(java.util.UUID).randomUUID().toString()}}")
+    private String nodeId;
+
+    @Value("${org.iala_aism.mrr.cache.shared.retry-after:PT10S}")
+    private Duration retryAfter;
+
+    @Autowired
+    public void setRedisTemplate(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Autowired
+    public void setMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    @Autowired
+    public void setEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Reads the value of the key together with its generation, which has to be given when a loaded value is stored.
+    // A generation of null means that the value must not be stored.
+    public <T> Entry<T> get(String key, Class<T> type) {
+        if (!available())
+            return new Entry<>(Optional.empty(), null);
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(key, GENERATION_PREFIX + key));
+            String json = values != null ? values.get(0) : null;
+            String generation = values != null && values.get(1) != null ? values.get(1) : "";
+            return new Entry<>(json == null ? Optional.empty() : Optional.of(mapper.readValue(json, type)), generation);
+        } catch (IOException e) {
+            log.warn("Could not read \"{}\" from the shared cache: {}", key, e.getMessage());
+        } catch (RuntimeException e) {
+            unavailable("read \"" + key + "\"", e);
+        }
+        return new Entry<>(Optional.empty(), null);
+    }
+
+    // Stores the value unless the key was invalidated since its generation was read
+    public void put(String key, String generation, Object value, Duration timeToLive) {
+        if (generation == null || !available())
+            return;
+        try {
+            redisTemplate.execute(PUT_IF_UNCHANGED, List.of(key, GENERATION_PREFIX + key),
+                    generation, mapper.writeValueAsString(value), String.valueOf(timeToLive.toMillis()));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not write \"{}\" to the shared cache: {}", key, e.getMessage());
+        } catch (RuntimeException e) {
+            unavailable("write \"" + key + "\"", e);
+        }
+    }
+
+    // Deletes the keys and increments their generations. Keys that cannot be invalidated now are invalidated later.
+    public void invalidate(Collection<String> keys) {
+        if (!available()) {
+            addPendingInvalidations(keys);
+            return;
+        }
+        try {
+            redisTemplate.execute(INVALIDATE, keys.stream().flatMap(key -> Stream.of(key, GENERATION_PREFIX + key)).toList(),
+                    String.valueOf(GENERATION_TIME_TO_LIVE.toMillis()));
+        } catch (RuntimeException e) {
+            addPendingInvalidations(keys);
+            unavailable("invalidate " + keys, e);
+        }
+    }
+
+    public void publish(CacheInvalidation.Kind kind, String key, String version, String id) {
+        if (!available())
+            return;
+        try {
+            redisTemplate.convertAndSend(CHANNEL, mapper.writeValueAsString(new CacheInvalidation(nodeId, kind, key, version, id)));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not publish the invalidation of {} \"{}\": {}", kind, key, e.getMessage());
+        } catch (RuntimeException e) {
+            unavailable("publish the invalidation of " + kind + " \"" + key + "\"", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidation invalidation;
+        try {
+            invalidation = mapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), CacheInvalidation.class);
+        } catch (IOException e) {
+            log.warn("Ignoring a malformed cache invalidation: {}", e.getMessage());
+            return;
+        }
+        // This node has already updated its own caches when it made the change
+        if (nodeId.equals(invalidation.origin()))
+            return;
+        log.debug("Invalidating {} \"{}\" changed by node {}", invalidation.kind(), invalidation.key(), invalidation.origin());
+        eventPublisher.publishEvent(invalidation);
+    }
+
+    // Whether Redis may be used. The first use after a failure, once the retry delay has passed, catches up on the
+    // invalidations that failed.
+    private boolean available() {
+        long until = unavailableUntil;
+        if (until == 0)
+            return true;
+        if (System.nanoTime() - until < 0)
+            return false;
+        unavailableUntil = 0;
+        log.info("Using the shared cache again");
+        if (!pendingInvalidations.isEmpty()) {
+            List<String> keys = List.copyOf(pendingInvalidations);
+            pendingInvalidations.removeAll(keys);
+            invalidate(keys);
+        }
+        return unavailableUntil == 0;
+    }
+
+    private void unavailable(String operation, RuntimeException e) {
+        if (unavailableUntil == 0)
+            log.warn("Could not {} in the shared cache, not using it for {}: {}", operation, retryAfter, e.getMessage());
+        unavailableUntil = System.nanoTime() + retryAfter.toNanos();
+    }
+
+    // Values of keys that are left out live on in Redis until they expire
+    private void addPendingInvalidations(Collection<String> keys) {
+        if (pendingInvalidations.size() + keys.size() > MAX_PENDING_INVALIDATIONS) {
+            log.error("Too many invalidations while the shared cache is unavailable, {} may be served stale until they expire", keys);
+            return;
+        }
+        pendingInvalidations.addAll(keys);
+    }
+
+    public record Entry<T>(Optional<T> value, String generation) {
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.model.SyntaxCreationJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// The queue of syntax creations, kept in Redis so that it survives restarts and is shared by all nodes. Jobs are
+// entries of a stream that the nodes read as one consumer group. Jobs to be retried wait in a sorted set scored by
+// when they are due, and jobs that have failed too often end up in a list for inspection.
+@Service
+@Slf4j
+public class SyntaxCreationQueue {
+
+    static final String STREAM = "mrr:syntax-creation:jobs";
+    static final String GROUP = "mrr";
+    static final String DELAYED = "mrr:syntax-creation:delayed";
+    static final String DEAD_LETTER = "mrr:syntax-creation:dead-letter";
+
+    private static final String JOB_FIELD = "job";
+    private static final int PROMOTE_BATCH_SIZE = 100;
+    private static final int RECLAIM_BATCH_SIZE = 100;
+
+    // Moves the due jobs from the sorted set to the stream in one step, so that no job is lost or moved twice
+    private static final RedisScript<Long> PROMOTE_DUE = new DefaultRedisScript<>(
+            "local jobs = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+                    "for _, job in ipairs(jobs) do " +
+                    "redis.call('ZREM', KEYS[1], job) " +
+                    "redis.call('XADD', KEYS[2], '*', '" + JOB_FIELD + "', job) " +
+                    "end " +
+                    "return #jobs", Long.class);
+
+    private StringRedisTemplate redisTemplate;
+    private ObjectMapper mapper;
+
+    @Value("${org.iala_aism.mrr.node-id:#{T(java.util.UUID).randomUUID().toString()}}")
+    private String nodeId;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.dead-letter-size:1000}")
+    private int deadLetterSize;
+
+    @Autowired
+    public void setRedisTemplate(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Autowired
+    public void setMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public void createGroup() {
+        try {
+            redisTemplate.opsForStream().createGroup(STREAM, ReadOffset.from("0"), GROUP);
+        } catch (DataAccessException e) {
+            // The group is created by the first node that starts
+            log.debug("Did not create the consumer group of the syntax creation queue: {}", e.getMessage());
+        }
+    }
+
+    public void enqueue(SyntaxCreationJob job) {
+        redisTemplate.opsForStream().add(StreamRecords.string(Map.of(JOB_FIELD, toJson(job))).withStreamKey(STREAM));
+    }
+
+    // The number of jobs that are waiting, being processed or waiting to be retried
+    public long size() {
+        Long queued = redisTemplate.opsForStream().size(STREAM);
+        Long delayed = redisTemplate.opsForZSet().zCard(DELAYED);
+        return (queued == null ? 0 : queued) + (delayed == null ? 0 : delayed);
+    }
+
+    // Waits up to the given time for the next job. The job must be acknowledged once it has been dealt with, otherwise
+    // it is eventually reclaimed.
+    public Optional<Entry> take(Duration wait) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(Consumer.from(GROUP, nodeId),
+                StreamReadOptions.empty().count(1).block(wait), StreamOffset.create(STREAM, ReadOffset.lastConsumed()));
+        if (records == null || records.isEmpty())
+            return Optional.empty();
+        return entryOf(records.get(0));
+    }
+
+    public void acknowledge(Entry entry) {
+        redisTemplate.opsForStream().acknowledge(STREAM, GROUP, entry.id());
+        redisTemplate.opsForStream().delete(STREAM, entry.id());
+    }
+
+    public void retryLater(SyntaxCreationJob job, Duration delay) {
+        redisTemplate.opsForZSet().add(DELAYED, toJson(job), System.currentTimeMillis() + delay.toMillis());
+    }
+
+    public void deadLetter(SyntaxCreationJob job) {
+        redisTemplate.opsForList().leftPush(DEAD_LETTER, toJson(job));
+        redisTemplate.opsForList().trim(DEAD_LETTER, 0, deadLetterSize - 1);
+    }
+
+    // Moves the jobs whose retry is due back to the stream and returns how many were moved
+    public long promoteDueRetries() {
+        Long promoted = redisTemplate.execute(PROMOTE_DUE, List.of(DELAYED, STREAM),
+                Long.toString(System.currentTimeMillis()), Integer.toString(PROMOTE_BATCH_SIZE));
+        return promoted == null ? 0 : promoted;
+    }
+
+    // Takes over the jobs that have been taken but not acknowledged for longer than the given time, which happens
+    // when the node that took them stopped while processing them
+    public List<Entry> reclaimStale(Duration minIdle) {
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : redisTemplate.opsForStream().pending(STREAM, GROUP, Range.unbounded(), RECLAIM_BATCH_SIZE)) {
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) > 0)
+                stale.add(message.getId());
+        }
+        if (stale.isEmpty())
+            return List.of();
+        return redisTemplate.opsForStream().claim(STREAM, GROUP, nodeId, minIdle, stale.toArray(RecordId[]::new))
+                .stream().map(this::entryOf).flatMap(Optional::stream).toList();
+    }
+
+    // A job that cannot be read would otherwise be taken again and again, so it is dropped
+    private Optional<Entry> entryOf(MapRecord<String, Object, Object> record) {
+        try {
+            return Optional.of(new Entry(record.getId(),
+                    mapper.readValue((String) record.getValue().get(JOB_FIELD), SyntaxCreationJob.class)));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.error("Dropping syntax creation job {} that could not be read: {}", record.getId(), e.getMessage());
+            redisTemplate.opsForStream().acknowledge(STREAM, GROUP, record.getId());
+            redisTemplate.opsForStream().delete(STREAM, record.getId());
+            return Optional.empty();
+        }
+    }
+
+    private String toJson(SyntaxCreationJob job) {
+        try {
+            return mapper.writeValueAsString(job);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write syntax creation job " + job.getStatusId(), e);
+        }
+    }
+
+    public record Entry(RecordId id, SyntaxCreationJob job) {
+    }
+}
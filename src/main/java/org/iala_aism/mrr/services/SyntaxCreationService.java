@@ -0,0 +1,301 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.components.SyntaxCreationClient;
+import org.iala_aism.mrr.exceptions.MrrRestException;
+import org.iala_aism.mrr.model.SyntaxCreationJob;
+import org.iala_aism.mrr.model.SyntaxCreationRequest;
+import org.iala_aism.mrr.model.SyntaxCreationResult;
+import org.iala_aism.mrr.model.SyntaxCreationResultRedis;
+import org.iala_aism.mrr.model.dto.SyntaxCreationDTO;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Creates namespace syntax definitions through the syntax service. Creations are queued and processed by a fixed number
+// of workers, so that bursts are absorbed without overwhelming the syntax service. The status of a creation is kept in
+// Redis, where clients can follow it by the ID that is returned when the creation is queued.
+@Service
+@Slf4j
+public class SyntaxCreationService {
+
+    static final String QUEUE_FULL = "Too many namespace syntax creations are waiting. Please try again later";
+
+    private static final Duration TAKE_WAIT = Duration.ofSeconds(2);
+
+    private SyntaxCreationClient client;
+    private SyntaxCreationQueue queue;
+    private SyntaxCreationStatusService creationStatusService;
+    private NamespaceSyntaxService namespaceSyntaxService;
+
+    private final AtomicLong depth = new AtomicLong();
+    private Timer waitTimer;
+    private Timer latencyTimer;
+    private Counter retries;
+    private Counter deadLetters;
+
+    private ExecutorService workerPool;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.workers:4}")
+    private int workers;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.queue-capacity:1000}")
+    private long queueCapacity;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.retry-delay:PT2S}")
+    private Duration retryDelay;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.max-retry-delay:PT5M}")
+    private Duration maxRetryDelay;
+
+    @Value("${org.iala_aism.mrr.syntax-creation.timeout:PT30S}")
+    private Duration timeout;
+
+    @Value("${org.iala_aism.mrr.virtual-threads.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    public void setClient(SyntaxCreationClient client) {
+        this.client = client;
+    }
+
+    @Autowired
+    public void setQueue(SyntaxCreationQueue queue) {
+        this.queue = queue;
+    }
+
+    @Autowired
+    public void setCreationStatusService(SyntaxCreationStatusService creationStatusService) {
+        this.creationStatusService = creationStatusService;
+    }
+
+    @Autowired
+    public void setNamespaceSyntaxService(NamespaceSyntaxService namespaceSyntaxService) {
+        this.namespaceSyntaxService = namespaceSyntaxService;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("mrr.syntax.queue.depth", depth, AtomicLong::get)
+                .description("Syntax creations that are queued, being processed or waiting to be retried")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("mrr.syntax.queue.wait")
+                .description("Time syntax creations wait in the queue before a worker takes them")
+                .register(meterRegistry);
+        this.latencyTimer = Timer.builder("mrr.syntax.queue.latency")
+                .description("Time from queueing a syntax creation until its final status is stored")
+                .register(meterRegistry);
+        this.retries = Counter.builder("mrr.syntax.queue.retries")
+                .description("Syntax creation attempts that failed and were scheduled again")
+                .register(meterRegistry);
+        this.deadLetters = Counter.builder("mrr.syntax.queue.dead.letters")
+                .description("Syntax creations that were given up after too many failed attempts")
+                .register(meterRegistry);
+    }
+
+    // Queues the creation and returns the ID of its status
+    public String create(SyntaxCreationDTO syntaxCreationDTO, String path) throws MrrRestException {
+        long size = queue.size();
+        depth.set(size);
+        if (size >= queueCapacity)
+            throw new MrrRestException(HttpStatus.TOO_MANY_REQUESTS, QUEUE_FULL, path);
+
+        SyntaxCreationResultRedis status = new SyntaxCreationResultRedis();
+        status.setCode(SyntaxCreationStatus.CREATING);
+        status.setNamespace(syntaxCreationDTO.getNamespace());
+        String id = creationStatusService.save(status).getId();
+        queue.enqueue(new SyntaxCreationJob(id, syntaxCreationDTO, 0, System.currentTimeMillis(), null));
+        return id;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        queue.createGroup();
+        running = true;
+        // The number of workers is bounded by the dispatcher, so with virtual threads a new thread is used for every job
+        workerPool = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("syntax-creation-", 1).factory())
+                : Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("syntax-creation-", 1).daemon().factory());
+        dispatcher = (virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon())
+                .name("syntax-creation-dispatcher").start(this::dispatch);
+        log.info("Processing syntax creations with {} workers", workers);
+    }
+
+    // Jobs that were not acknowledged by the time the workers stop are taken over by another node or after a restart
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (dispatcher != null)
+            dispatcher.interrupt();
+        if (workerPool != null) {
+            workerPool.shutdownNow();
+            workerPool.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // Only takes a job from the queue when a worker is free, so jobs that cannot be processed yet stay in Redis where
+    // other nodes can take them
+    private void dispatch() {
+        Semaphore free = new Semaphore(workers);
+        while (running) {
+            try {
+                free.acquire();
+                Optional<SyntaxCreationQueue.Entry> entry;
+                try {
+                    entry = queue.take(TAKE_WAIT);
+                } catch (RuntimeException e) {
+                    free.release();
+                    log.warn("Could not take a syntax creation from the queue: {}", e.getMessage());
+                    Thread.sleep(TAKE_WAIT.toMillis());
+                    continue;
+                }
+                if (entry.isEmpty()) {
+                    free.release();
+                    continue;
+                }
+                workerPool.execute(() -> {
+                    try {
+                        process(entry.get());
+                    } finally {
+                        free.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // The pool rejects work when it has been shut down
+                if (running)
+                    log.error("Could not dispatch a syntax creation", e);
+            }
+        }
+    }
+
+    void process(SyntaxCreationQueue.Entry entry) {
+        SyntaxCreationJob job = entry.job();
+        SyntaxCreationDTO syntax = job.getSyntax();
+        if (job.getAttempt() == 0)
+            waitTimer.record(Duration.ofMillis(System.currentTimeMillis() - job.getEnqueuedAt()));
+        try {
+            SyntaxCreationRequest request = new SyntaxCreationRequest(syntax.getAbnfSyntax(), syntax.getNamespace(),
+                    syntax.getParentNamespace(), syntax.getNamespaceOwner());
+            // The client times the request out, so this does not wait forever
+            SyntaxCreationResult result = client.submit(request).join();
+            complete(job, result);
+        } catch (CompletionException e) {
+            failed(job, e.getCause() instanceof TimeoutException
+                    ? "The syntax service did not respond in time"
+                    : "The syntax service could not be reached");
+        } catch (RuntimeException e) {
+            log.error("Syntax creation for namespace {} failed", syntax.getNamespace(), e);
+            failed(job, e.getMessage());
+        }
+        queue.acknowledge(entry);
+    }
+
+    // Moves the retries that are due back to the queue and takes over the jobs of nodes that stopped while processing them
+    @Scheduled(fixedDelayString = "${org.iala_aism.mrr.syntax-creation.maintenance-interval:PT1S}")
+    public void maintain() {
+        if (!running)
+            return;
+        try {
+            queue.promoteDueRetries();
+            // A job that is processed normally is acknowledged within the timeout
+            for (SyntaxCreationQueue.Entry entry : queue.reclaimStale(timeout.multipliedBy(2))) {
+                failed(entry.job(), "The node that processed the creation stopped");
+                queue.acknowledge(entry);
+            }
+            depth.set(queue.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not maintain the syntax creation queue: {}", e.getMessage());
+        }
+    }
+
+    // A failure is a problem with reaching the syntax service, so the job is tried again later. An error that the
+    // syntax service returns is final.
+    private void failed(SyntaxCreationJob job, String error) {
+        job.setAttempt(job.getAttempt() + 1);
+        job.setLastError(error);
+        if (job.getAttempt() < maxAttempts) {
+            Duration delay = retryDelay.multipliedBy(1L << Math.min(job.getAttempt() - 1, 20));
+            if (delay.compareTo(maxRetryDelay) > 0)
+                delay = maxRetryDelay;
+            log.warn("Syntax creation for namespace {} failed ({}), retrying in {}", job.getSyntax().getNamespace(), error, delay);
+            queue.retryLater(job, delay);
+            retries.increment();
+            return;
+        }
+        log.error("Syntax creation for namespace {} failed {} times, giving up: {}", job.getSyntax().getNamespace(), job.getAttempt(), error);
+        queue.deadLetter(job);
+        deadLetters.increment();
+        SyntaxCreationResult result = new SyntaxCreationResult();
+        result.setCode(SyntaxCreationStatus.ERROR);
+        result.setMessage(error);
+        complete(job, result);
+    }
+
+    private void complete(SyntaxCreationJob job, SyntaxCreationResult result) {
+        String namespace = job.getSyntax().getNamespace();
+        if (SyntaxCreationStatus.ERROR.equals(result.getCode())) {
+            log.error("Syntax creation for namespace {} failed: \"{}\"", namespace, result.getMessage());
+        } else if (!namespace.equals(result.getNamespace())) {
+            result = new SyntaxCreationResult();
+            result.setMessage("The MRN namespace of the returned response did not match the MRN namespace of the original request");
+            result.setCode(SyntaxCreationStatus.ERROR);
+        }
+        result.setNamespace(namespace);
+        if (SyntaxCreationStatus.OK.equals(result.getCode())) {
+            // The syntax of the namespace has been (re)created so any compiled pattern for it is stale
+            namespaceSyntaxService.syntaxChanged(namespace);
+        }
+        Optional<SyntaxCreationResultRedis> maybeResultRedis = creationStatusService.getById(job.getStatusId());
+        if (maybeResultRedis.isEmpty()) {
+            log.warn("An existing creation status could not be found for \"{}\"", namespace);
+        }
+        SyntaxCreationResultRedis resultRedis = maybeResultRedis.orElse(new SyntaxCreationResultRedis());
+        resultRedis.copyValuesFrom(result);
+        creationStatusService.save(resultRedis);
+        latencyTimer.record(Duration.ofMillis(System.currentTimeMillis() - job.getEnqueuedAt()));
+    }
+}
@@ -16,32 +16,118 @@
 
 package org.iala_aism.mrr.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.iala_aism.mrr.model.SyntaxCreationResultRedis;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
 import org.iala_aism.mrr.repositories.SyntaxCreationStatusRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Stores the status of syntax creations and notifies the requests waiting for a creation to finish. The status may be
+// completed on any node, so completions are announced to all nodes through Redis.
 @Service
-public class SyntaxCreationStatusService {
+@Slf4j
+public class SyntaxCreationStatusService implements MessageListener {
+
+    public static final String CHANNEL = "mrr:syntax-creation:completed";
 
     private SyntaxCreationStatusRepository repository;
+    private StringRedisTemplate redisTemplate;
+    private Timer findTimer;
+    private Timer getTimer;
+    private Timer saveTimer;
+
+    private final Map<String, Set<CompletableFuture<SyntaxCreationResultRedis>>> waiting = new ConcurrentHashMap<>();
 
     @Autowired
     public void setRepository(SyntaxCreationStatusRepository repository) {
         this.repository = repository;
     }
 
+    @Autowired
+    public void setRedisTemplate(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.findTimer = statusTimer("find", meterRegistry);
+        this.getTimer = statusTimer("get", meterRegistry);
+        this.saveTimer = statusTimer("save", meterRegistry);
+    }
+
     public Optional<SyntaxCreationResultRedis> getByNamespace(String namespace) {
-        return repository.getByNamespace(namespace);
+        return findTimer.record(() -> repository.getByNamespace(namespace));
     }
 
     public Optional<SyntaxCreationResultRedis> getById(String id) {
-        return repository.findById(id);
+        return getTimer.record(() -> repository.findById(id));
     }
 
     public SyntaxCreationResultRedis save(SyntaxCreationResultRedis creationResultRedis) {
-        return repository.save(creationResultRedis);
+        SyntaxCreationResultRedis saved = saveTimer.record(() -> repository.save(creationResultRedis));
+        if (isFinal(saved)) {
+            try {
+                redisTemplate.convertAndSend(CHANNEL, saved.getId());
+            } catch (RuntimeException e) {
+                // Waiting requests still get the status when they time out
+                log.warn("Could not announce the completion of syntax creation {}: {}", saved.getId(), e.getMessage());
+            }
+        }
+        return saved;
+    }
+
+    // Completes with the status once the creation has finished, or right away if it already has. Completes with null
+    // if the status does not exist. The future must be completed or cancelled by the caller if it stops waiting.
+    public CompletableFuture<SyntaxCreationResultRedis> awaitCompletion(String id) {
+        CompletableFuture<SyntaxCreationResultRedis> completion = new CompletableFuture<>();
+        // Registered before the status is read, so that a completion in between is not missed
+        waiting.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(completion);
+        completion.whenComplete((status, e) -> waiting.computeIfPresent(id, (k, futures) -> {
+            futures.remove(completion);
+            return futures.isEmpty() ? null : futures;
+        }));
+        notifyWaiting(id);
+        return completion;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        notifyWaiting(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void notifyWaiting(String id) {
+        Set<CompletableFuture<SyntaxCreationResultRedis>> futures = waiting.get(id);
+        if (futures == null || futures.isEmpty())
+            return;
+        Optional<SyntaxCreationResultRedis> status = getById(id);
+        if (status.isPresent() && !isFinal(status.get()))
+            return;
+        for (CompletableFuture<SyntaxCreationResultRedis> future : Set.copyOf(futures)) {
+            future.complete(status.orElse(null));
+        }
+    }
+
+    private static Timer statusTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("mrr.syntax.status.operations")
+                .description("Time taken by the Redis operations on syntax creation statuses")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static boolean isFinal(SyntaxCreationResultRedis status) {
+        return status.getCode() != null && status.getCode() != SyntaxCreationStatus.CREATING;
     }
 }
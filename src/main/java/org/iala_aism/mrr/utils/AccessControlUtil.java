@@ -16,33 +16,103 @@
 
 package org.iala_aism.mrr.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 
+// The namespaces a token may manage are compiled into a matcher once per token. The matchers are cached by the issuer
+// and ID of the token, or by the token itself when it has no ID, until the token expires.
 @Component("accessControlUtil")
 @Slf4j
 public class AccessControlUtil {
 
+    private static final String MANAGES_NAMESPACES = "manages_namespaces";
+
+    private Cache<String, CachedMatcher> matchers;
+    private Duration maximumTimeToLive;
+
+    // The maximum time to live is also how long the matchers of tokens without an expiry are kept
+    @Autowired
+    public void configureMatchers(MeterRegistry meterRegistry,
+                                  @Value("${org.iala_aism.mrr.access-control.matchers.maximum-size:10000}") long maximumSize,
+                                  @Value("${org.iala_aism.mrr.access-control.matchers.maximum-time-to-live:PT1H}") Duration maximumTimeToLive) {
+        this.maximumTimeToLive = maximumTimeToLive;
+        this.matchers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, CachedMatcher>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedMatcher value, long currentTime) {
+                        return value.timeToLive().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedMatcher value, long currentTime, long currentDuration) {
+                        return value.timeToLive().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedMatcher value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, matchers, "mrr.access.matchers");
+    }
+
     public boolean canManageNamespace(String mrn) {
         log.debug("Checking if user is allowed to manage namespace \"{}\"", mrn);
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth.isAuthenticated() && auth instanceof JwtAuthenticationToken jwtAuthenticationToken) {
-            List<String> managesNamespaces = jwtAuthenticationToken.getToken().getClaimAsStringList("manages_namespaces");
-            if (managesNamespaces != null && !managesNamespaces.isEmpty()) {
-                for (String namespace : managesNamespaces) {
-                    if (!namespace.isBlank() && mrn.startsWith(namespace)) {
-                        log.debug("User is allowed to manage namespace \"{}\"", mrn);
-                        return true;
-                    }
-                }
-            }
+        if (currentMatcher().matches(mrn)) {
+            log.debug("User is allowed to manage namespace \"{}\"", mrn);
+            return true;
         }
         log.debug("User is not allowed to manage namespace \"{}\"", mrn);
         return false;
     }
+
+    // Checks a whole batch against a single lookup of the matcher of the token
+    public boolean canManageAll(Collection<String> mrns) {
+        boolean allowed = currentMatcher().matchesAll(mrns);
+        log.debug("User is {}allowed to manage the namespaces of {} MRNs", allowed ? "" : "not ", mrns.size());
+        return allowed;
+    }
+
+    private NamespaceClaimMatcher currentMatcher() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || !(auth instanceof JwtAuthenticationToken jwtAuthenticationToken))
+            return NamespaceClaimMatcher.NONE;
+        Jwt jwt = jwtAuthenticationToken.getToken();
+        Duration timeToLive = timeToLiveOf(jwt);
+        if (timeToLive.isZero() || timeToLive.isNegative())
+            return NamespaceClaimMatcher.of(jwt.getClaimAsStringList(MANAGES_NAMESPACES));
+        // Token IDs are only unique per issuer
+        String key = jwt.getId() != null ? jwt.getClaimAsString("iss") + " " + jwt.getId() : jwt.getTokenValue();
+        return matchers.get(key, k -> new CachedMatcher(NamespaceClaimMatcher.of(jwt.getClaimAsStringList(MANAGES_NAMESPACES)),
+                timeToLive)).matcher();
+    }
+
+    private Duration timeToLiveOf(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null)
+            return maximumTimeToLive;
+        Duration untilExpiry = Duration.between(Instant.now(), expiresAt);
+        return untilExpiry.compareTo(maximumTimeToLive) < 0 ? untilExpiry : maximumTimeToLive;
+    }
+
+    private record CachedMatcher(NamespaceClaimMatcher matcher, Duration timeToLive) {
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.iala_aism.mrr.config.HttpCacheProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Adds the validators and caching directives to registry responses. For GET requests Spring compares the ETag and
+// Last-Modified of a returned ResponseEntity with the If-None-Match and If-Modified-Since of the request, and answers
+// 304 Not Modified without writing the body when they match.
+@Component
+public class HttpCachePolicy {
+
+    private final NamespaceTrie<CacheControl> namespaces = new NamespaceTrie<>();
+    private CacheControl defaultCacheControl = CacheControl.noCache();
+
+    @Autowired
+    public void setProperties(HttpCacheProperties properties) {
+        defaultCacheControl = cacheControlOf(properties.getMaxAge());
+        for (HttpCacheProperties.NamespacePolicy policy : properties.getNamespaces()) {
+            namespaces.put(policy.getNamespace(), cacheControlOf(policy.getMaxAge()));
+        }
+    }
+
+    // The policy of the longest configured namespace that the MRN is in
+    public CacheControl cacheControlFor(String mrn) {
+        return namespaces.findNearest(mrn).orElse(defaultCacheControl);
+    }
+
+    // The ETag is derived from the given parts, which must together determine the content of the body
+    public <T> ResponseEntity<T> ok(String mrn, T body, Long lastModified, String... contentParts) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(cacheControlFor(mrn))
+                .eTag(etagOf(contentParts));
+        if (lastModified != null)
+            builder.lastModified(lastModified);
+        return builder.body(body);
+    }
+
+    public static String etagOf(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String part : parts) {
+            if (part != null)
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+            // Separates the parts, and tells a missing part from an empty one
+            digest.update(part != null ? (byte) 0 : (byte) 1);
+        }
+        byte[] hash = Arrays.copyOf(digest.digest(), 16);
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+    }
+
+    private static CacheControl cacheControlOf(Duration maxAge) {
+        return maxAge == null || maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).cachePublic();
+    }
+}
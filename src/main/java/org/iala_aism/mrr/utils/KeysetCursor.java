@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.iala_aism.mrr.model.dto.CursorPage;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+// An opaque token holding the sort keys of the last element of a page, so that the next page can start right after it
+public final class KeysetCursor {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final char SEPARATOR = '\u0000';
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(String... keys) {
+        String joined = String.join(String.valueOf(SEPARATOR), keys);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // An empty cursor points to the start of the listing, in which case all keys are empty
+    public static List<String> decode(String cursor, int keyCount) {
+        if (cursor == null || cursor.isBlank())
+            return Collections.nCopies(keyCount, "");
+        String joined;
+        try {
+            joined = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The given cursor is not valid");
+        }
+        List<String> keys = List.of(joined.split(String.valueOf(SEPARATOR), -1));
+        if (keys.size() != keyCount || keys.get(0).isEmpty())
+            throw new IllegalArgumentException("The given cursor is not valid");
+        return keys;
+    }
+
+    // Returns the page with a Link header pointing to the next page of the current request if there is one
+    public static <T> ResponseEntity<CursorPage<T>> toResponse(CursorPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("cursor", page.getNextCursor())
+                    .replaceQueryParam("size", page.getSize())
+                    .build().toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page);
+    }
+}
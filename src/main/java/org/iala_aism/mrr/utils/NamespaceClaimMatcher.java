@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Matches MRNs against the namespaces that a token claims to manage. The claims are plain string prefixes, so they are
+// kept in a prefix tree over their characters and an MRN is matched in a single pass over it, however many there are.
+// A matcher is immutable once built and can be shared between threads.
+public final class NamespaceClaimMatcher {
+
+    public static final NamespaceClaimMatcher NONE = new NamespaceClaimMatcher(new Node(), 0);
+
+    private final Node root;
+    private final int size;
+
+    private NamespaceClaimMatcher(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    // Blank claims are ignored, as they would otherwise match every MRN
+    public static NamespaceClaimMatcher of(Collection<String> claims) {
+        if (claims == null || claims.isEmpty())
+            return NONE;
+        Node root = new Node();
+        for (String claim : claims) {
+            if (claim == null || claim.isBlank())
+                continue;
+            Node node = root;
+            for (int i = 0; i < claim.length() && !node.terminal; i++) {
+                node = node.children.computeIfAbsent(claim.charAt(i), c -> new Node());
+            }
+            // Claims below this one are covered by it
+            node.terminal = true;
+            node.children.clear();
+        }
+        int size = terminals(root);
+        return size == 0 ? NONE : new NamespaceClaimMatcher(root, size);
+    }
+
+    public boolean matches(String mrn) {
+        if (mrn == null)
+            return false;
+        Node node = root;
+        for (int i = 0; i < mrn.length(); i++) {
+            node = node.children.get(mrn.charAt(i));
+            if (node == null)
+                return false;
+            if (node.terminal)
+                return true;
+        }
+        return false;
+    }
+
+    public boolean matchesAll(Collection<String> mrns) {
+        for (String mrn : mrns) {
+            if (!matches(mrn))
+                return false;
+        }
+        return true;
+    }
+
+    // The number of claims that are not covered by another claim
+    public int size() {
+        return size;
+    }
+
+    private static int terminals(Node node) {
+        int count = node.terminal ? 1 : 0;
+        for (Node child : node.children.values()) {
+            count += terminals(child);
+        }
+        return count;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private boolean terminal;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A prefix tree over the ':' separated segments of MRN namespaces.
+// Reads are lock free, writes are serialized on the trie itself.
+public class NamespaceTrie<T> {
+
+    private volatile Node<T> root = new Node<>();
+    private volatile int size;
+
+    public synchronized void put(String namespace, T value) {
+        Node<T> node = root;
+        int start = 0;
+        while (start <= namespace.length()) {
+            int end = segmentEnd(namespace, start);
+            node = node.children.computeIfAbsent(namespace.substring(start, end), s -> new Node<>());
+            start = end + 1;
+        }
+        if (node.value == null)
+            size++;
+        node.value = value;
+    }
+
+    public synchronized T remove(String namespace) {
+        T removed = remove(root, namespace, 0);
+        if (removed != null)
+            size--;
+        return removed;
+    }
+
+    // Atomically replaces the content of the trie with the given entries
+    public synchronized void replaceAll(Map<String, T> entries) {
+        NamespaceTrie<T> fresh = new NamespaceTrie<>();
+        entries.forEach(fresh::put);
+        root = fresh.root;
+        size = fresh.size;
+    }
+
+    public T get(String namespace) {
+        Node<T> node = root;
+        int start = 0;
+        while (node != null && start <= namespace.length()) {
+            int end = segmentEnd(namespace, start);
+            node = node.children.get(namespace.substring(start, end));
+            start = end + 1;
+        }
+        return node != null ? node.value : null;
+    }
+
+    // Returns the value of the longest namespace that is equal to or a parent of the given MRN
+    public Optional<T> findNearest(String mrn) {
+        Node<T> node = root;
+        T nearest = null;
+        int start = 0;
+        while (start <= mrn.length()) {
+            int end = segmentEnd(mrn, start);
+            node = node.children.get(mrn.substring(start, end));
+            if (node == null)
+                break;
+            if (node.value != null)
+                nearest = node.value;
+            start = end + 1;
+        }
+        return Optional.ofNullable(nearest);
+    }
+
+    // Returns the value of the given namespace or of any namespace below it. Nodes without values are pruned on removal,
+    // so every node in the trie leads to a value and this does not depend on the size of the subtree.
+    public Optional<T> findAnyWithin(String namespace) {
+        Node<T> node = root;
+        int start = 0;
+        while (node != null && start <= namespace.length()) {
+            int end = segmentEnd(namespace, start);
+            node = node.children.get(namespace.substring(start, end));
+            start = end + 1;
+        }
+        return Optional.ofNullable(node != null ? findAny(node) : null);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private T remove(Node<T> node, String namespace, int start) {
+        int end = segmentEnd(namespace, start);
+        String segment = namespace.substring(start, end);
+        Node<T> child = node.children.get(segment);
+        if (child == null)
+            return null;
+        T removed;
+        if (end == namespace.length()) {
+            removed = child.value;
+            child.value = null;
+        } else {
+            removed = remove(child, namespace, end + 1);
+        }
+        if (child.value == null && child.children.isEmpty())
+            node.children.remove(segment);
+        return removed;
+    }
+
+    private static <T> T findAny(Node<T> node) {
+        if (node.value != null)
+            return node.value;
+        for (Node<T> child : node.children.values()) {
+            T value = findAny(child);
+            if (value != null)
+                return value;
+        }
+        return null;
+    }
+
+    private static int segmentEnd(String namespace, int start) {
+        int end = namespace.indexOf(':', start);
+        return end < 0 ? namespace.length() : end;
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        private volatile T value;
+    }
+}
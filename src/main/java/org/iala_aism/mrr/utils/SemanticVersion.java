@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A resource version in the format X.Y.Z
+public record SemanticVersion(int major, int minor, int patch) implements Comparable<SemanticVersion> {
+
+    public static final Pattern VERSION_PATTERN = Pattern.compile("^(0|[1-9]\\d*)\\.(0|[1-9]\\d*)\\.(0|[1-9]\\d*)$");
+
+    public static Optional<SemanticVersion> tryParse(String version) {
+        if (version == null)
+            return Optional.empty();
+        Matcher matcher = VERSION_PATTERN.matcher(version);
+        if (!matcher.matches())
+            return Optional.empty();
+        try {
+            return Optional.of(new SemanticVersion(Integer.parseInt(matcher.group(1)),
+                    Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3))));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public SemanticVersion nextMajor() {
+        return new SemanticVersion(major + 1, 0, 0);
+    }
+
+    public SemanticVersion nextMinor() {
+        return new SemanticVersion(major, minor + 1, 0);
+    }
+
+    public SemanticVersion nextPatch() {
+        return new SemanticVersion(major, minor, patch + 1);
+    }
+
+    public List<Integer> toList() {
+        return List.of(major, minor, patch);
+    }
+
+    @Override
+    public int compareTo(SemanticVersion other) {
+        if (major != other.major)
+            return Integer.compare(major, other.major);
+        if (minor != other.minor)
+            return Integer.compare(minor, other.minor);
+        return Integer.compare(patch, other.patch);
+    }
+
+    @Override
+    public String toString() {
+        return major + "." + minor + "." + patch;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A range of versions in the npm semver range syntax, e.g. ">=1.2.0 <2.0.0", "^1.4", "~2.1.0 || 3.x".
+// A range is resolved into a union of half open intervals [lower, upper) where a null bound is unbounded.
+public final class SemverRange {
+
+    private static final Pattern PARTIAL_PATTERN = Pattern.compile(
+            "^[vV]?(x|X|\\*|0|[1-9]\\d*)(?:\\.(x|X|\\*|0|[1-9]\\d*)(?:\\.(x|X|\\*|0|[1-9]\\d*))?)?$");
+    private static final Pattern COMPARATOR_PATTERN = Pattern.compile("^(<=|>=|<|>|=|~>?|\\^)?(.+)$");
+    private static final Pattern HYPHEN_PATTERN = Pattern.compile("^(\\S+)\\s+-\\s+(\\S+)$");
+    private static final Pattern OPERATOR_SPACING_PATTERN = Pattern.compile("(<=|>=|<|>|=|~>?|\\^)\\s+");
+    private static final Interval EMPTY = new Interval(new SemanticVersion(0, 0, 0), new SemanticVersion(0, 0, 0));
+
+    private final List<Interval> intervals;
+
+    private SemverRange(List<Interval> intervals) {
+        this.intervals = intervals;
+    }
+
+    public static SemverRange parse(String range) {
+        if (range == null)
+            throw new IllegalArgumentException("The version range must not be empty");
+        List<Interval> intervals = new ArrayList<>();
+        for (String set : range.split("\\|\\|")) {
+            Interval interval = parseComparatorSet(set.trim());
+            if (!interval.isEmpty())
+                intervals.add(interval);
+        }
+        return new SemverRange(List.copyOf(intervals));
+    }
+
+    public List<Interval> getIntervals() {
+        return intervals;
+    }
+
+    // True if no version can ever satisfy the range
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    public boolean contains(SemanticVersion version) {
+        return intervals.stream().anyMatch(interval -> interval.contains(version));
+    }
+
+    public List<Map<String, Object>> toParameters() {
+        return intervals.stream().map(Interval::toParameters).toList();
+    }
+
+    private static Interval parseComparatorSet(String set) {
+        if (set.isEmpty())
+            return Interval.UNBOUNDED;
+        Matcher hyphen = HYPHEN_PATTERN.matcher(set);
+        if (hyphen.matches()) {
+            Partial from = Partial.parse(hyphen.group(1));
+            Partial to = Partial.parse(hyphen.group(2));
+            return new Interval(from.floor(), to.ceiling());
+        }
+        Interval interval = Interval.UNBOUNDED;
+        for (String comparator : OPERATOR_SPACING_PATTERN.matcher(set).replaceAll("$1").split("\\s+")) {
+            interval = interval.intersect(parseComparator(comparator));
+        }
+        return interval;
+    }
+
+    private static Interval parseComparator(String comparator) {
+        Matcher matcher = COMPARATOR_PATTERN.matcher(comparator);
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Invalid version comparator: " + comparator);
+        String operator = matcher.group(1) == null ? "=" : matcher.group(1);
+        Partial partial = Partial.parse(matcher.group(2));
+        if (partial.major() == null) {
+            // Wildcards match everything, so only strict comparisons against them can be unsatisfiable
+            return operator.equals("<") || operator.equals(">") ? EMPTY : Interval.UNBOUNDED;
+        }
+        return switch (operator) {
+            case "=" -> new Interval(partial.floor(), partial.ceiling());
+            case ">=" -> new Interval(partial.floor(), null);
+            case ">" -> new Interval(partial.ceiling(), null);
+            case "<" -> new Interval(null, partial.floor());
+            case "<=" -> new Interval(null, partial.ceiling());
+            case "~", "~>" -> new Interval(partial.floor(),
+                    partial.minor() == null ? partial.floor().nextMajor() : partial.floor().nextMinor());
+            case "^" -> new Interval(partial.floor(), caretCeiling(partial));
+            default -> throw new IllegalArgumentException("Invalid version comparator: " + comparator);
+        };
+    }
+
+    // ^ allows changes that do not modify the left-most non-zero component
+    private static SemanticVersion caretCeiling(Partial partial) {
+        SemanticVersion floor = partial.floor();
+        if (floor.major() > 0 || partial.minor() == null)
+            return floor.nextMajor();
+        if (floor.minor() > 0 || partial.patch() == null)
+            return floor.nextMinor();
+        return floor.nextPatch();
+    }
+
+    // A version where trailing components may be missing or wildcards
+    private record Partial(Integer major, Integer minor, Integer patch) {
+
+        static Partial parse(String partial) {
+            Matcher matcher = PARTIAL_PATTERN.matcher(partial);
+            if (!matcher.matches())
+                throw new IllegalArgumentException("Invalid version: " + partial);
+            Integer major = component(matcher.group(1));
+            Integer minor = major == null ? null : component(matcher.group(2));
+            Integer patch = minor == null ? null : component(matcher.group(3));
+            return new Partial(major, minor, patch);
+        }
+
+        private static Integer component(String component) {
+            if (component == null || component.equalsIgnoreCase("x") || component.equals("*"))
+                return null;
+            try {
+                return Integer.parseInt(component);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid version component: " + component);
+            }
+        }
+
+        // The lowest version matched by the partial
+        SemanticVersion floor() {
+            if (major == null)
+                return null;
+            return new SemanticVersion(major, minor == null ? 0 : minor, patch == null ? 0 : patch);
+        }
+
+        // The lowest version that is higher than every version matched by the partial
+        SemanticVersion ceiling() {
+            if (major == null)
+                return null;
+            if (minor == null)
+                return floor().nextMajor();
+            if (patch == null)
+                return floor().nextMinor();
+            return floor().nextPatch();
+        }
+    }
+
+    public record Interval(SemanticVersion lower, SemanticVersion upper) {
+
+        static final Interval UNBOUNDED = new Interval(null, null);
+
+        public boolean isEmpty() {
+            return lower != null && upper != null && lower.compareTo(upper) >= 0;
+        }
+
+        public boolean contains(SemanticVersion version) {
+            return (lower == null || version.compareTo(lower) >= 0) && (upper == null || version.compareTo(upper) < 0);
+        }
+
+        Interval intersect(Interval other) {
+            SemanticVersion newLower = lower == null ? other.lower
+                    : other.lower == null || lower.compareTo(other.lower) >= 0 ? lower : other.lower;
+            SemanticVersion newUpper = upper == null ? other.upper
+                    : other.upper == null || upper.compareTo(other.upper) <= 0 ? upper : other.upper;
+            return new Interval(newLower, newUpper);
+        }
+
+        Map<String, Object> toParameters() {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("lower", lower == null ? null : lower.toList());
+            parameters.put("upper", upper == null ? null : upper.toList());
+            return parameters;
+        }
+    }
+}
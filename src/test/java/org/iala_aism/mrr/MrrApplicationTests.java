@@ -16,14 +16,49 @@
 
 package org.iala_aism.mrr;
 
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
 
+import java.io.IOException;
+import java.net.ServerSocket;
+
+// The application subscribes to Redis and migrates the Neo4j schema when it starts, so it is started against an
+// embedded Redis and the embedded database of the Neo4j tests
 @SpringBootTest
 class MrrApplicationTests {
 
+    private static final int REDIS_PORT = freePort();
+    private static RedisServer redis;
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) throws IOException {
+        redis = new RedisServer(REDIS_PORT);
+        redis.start();
+        registry.add("spring.neo4j.uri", Neo4jHarnessTest.NEO4J::boltURI);
+        registry.add("spring.neo4j.authentication.username", () -> "neo4j");
+        registry.add("spring.neo4j.authentication.password", () -> "");
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", () -> REDIS_PORT);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
     @Test
     void contextLoads() {
     }
 
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.components.QueryTracker;
+import org.iala_aism.mrr.services.SchemaMigrationService;
+import org.iala_aism.mrr.services.SharedCacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.data.neo4j.DataNeo4jTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// Base for tests of the Neo4j repositories and services against an embedded database. The database is shared by all
+// tests in the JVM and has the migrated schema. Every query run through the driver bean is counted by the QueryRecorder
+// and, while a request is being handled, accounted for by the QueryTracker.
+@DataNeo4jTest
+@Import(Neo4jHarnessTest.HarnessConfig.class)
+public abstract class Neo4jHarnessTest {
+
+    public static final Neo4j NEO4J = startDatabase();
+
+    // Redis is not part of these tests, so nothing is shared between nodes
+    @MockBean
+    private SharedCacheService sharedCacheService;
+
+    @BeforeEach
+    void missTheSharedCache() {
+        when(sharedCacheService.get(any(), any())).thenReturn(new SharedCacheService.Entry<>(Optional.empty(), null));
+    }
+
+    @DynamicPropertySource
+    static void neo4jProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.neo4j.uri", NEO4J::boltURI);
+        registry.add("spring.neo4j.authentication.username", () -> "neo4j");
+        registry.add("spring.neo4j.authentication.password", () -> "");
+        // Tests write to the database directly, which the filter would not know about
+        registry.add("org.iala_aism.mrr.mrn-filter.enabled", () -> "false");
+    }
+
+    // Runs a statement directly against the database, bypassing the driver and thereby the recorder
+    protected static void execute(String cypher) {
+        NEO4J.defaultDatabaseService().executeTransactionally(cypher);
+    }
+
+    // Runs a query that returns a single number directly against the database
+    protected static long count(String cypher) {
+        return NEO4J.defaultDatabaseService().executeTransactionally(cypher, Map.of(),
+                result -> ((Number) result.next().values().iterator().next()).longValue());
+    }
+
+    protected static void clearDatabase() {
+        execute("MATCH (n) WHERE NOT n:__MrrSchemaMigration DETACH DELETE n");
+    }
+
+    private static Neo4j startDatabase() {
+        Neo4j neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+        Runtime.getRuntime().addShutdownHook(new Thread(neo4j::close));
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), AuthTokens.none())) {
+            SchemaMigrationService migrationService = new SchemaMigrationService();
+            migrationService.setDriver(driver);
+            migrationService.migrate();
+        }
+        return neo4j;
+    }
+
+    @TestConfiguration
+    public static class HarnessConfig {
+
+        @Bean
+        public static QueryRecorder queryRecorder() {
+            return new QueryRecorder();
+        }
+
+        @Bean
+        public static QueryTracker queryTracker() {
+            return new QueryTracker();
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public static BeanPostProcessor recordingDriverPostProcessor(QueryRecorder queryRecorder, QueryTracker queryTracker) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof Driver driver ? queryRecorder.wrap(queryTracker.wrap(driver)) : bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr;
+
+import org.iala_aism.mrr.components.QueryTracker;
+import org.iala_aism.mrr.components.RequestMetricsInterceptor;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Fails a MockMvc request that makes more round trips to the database than it is allowed to, which is how N+1 query
+// patterns that creep into the endpoints show up. The statements are the ones the RequestMetricsInterceptor accounted
+// for, so the MockMvc instance needs to have it and the driver needs to be wrapped by its QueryTracker.
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    public static ResultMatcher atMost(int maxQueries) {
+        return result -> {
+            assertThat(result.getRequest().getAttribute(RequestMetricsInterceptor.QUERIES))
+                    .withFailMessage("The statements of the request were not accounted for")
+                    .isInstanceOf(QueryTracker.Queries.class);
+            QueryTracker.Queries queries = (QueryTracker.Queries) result.getRequest().getAttribute(RequestMetricsInterceptor.QUERIES);
+            assertThat(queries.count())
+                    .withFailMessage("Expected at most %d queries but %d were run:%n%s", maxQueries, queries.count(),
+                            queries.statements().stream().map(QueryTracker.Statement::cypher)
+                                    .collect(Collectors.joining(System.lineSeparator())))
+                    .isLessThanOrEqualTo(maxQueries);
+        };
+    }
+}
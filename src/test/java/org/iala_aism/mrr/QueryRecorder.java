@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.types.Entity;
+import org.neo4j.driver.types.Node;
+import org.neo4j.driver.types.Path;
+import org.neo4j.driver.types.Relationship;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Wraps a driver to count the queries that are run and the rows and approximate bytes that are read from their results
+public class QueryRecorder {
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public Driver wrap(Driver driver) {
+        return proxy(Driver.class, driver, (method, result) -> result instanceof Session session ? wrapSession(session) : result);
+    }
+
+    public void reset() {
+        queries.set(0);
+        rows.set(0);
+        bytes.set(0);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(queries.get(), rows.get(), bytes.get());
+    }
+
+    private Session wrapSession(Session session) {
+        return proxy(Session.class, session, (method, result) -> {
+            if (result instanceof Transaction transaction)
+                return proxy(Transaction.class, transaction, (m, r) -> r instanceof Result rs ? wrapResult(rs) : r);
+            return result instanceof Result rs ? wrapResult(rs) : result;
+        });
+    }
+
+    private Result wrapResult(Result result) {
+        queries.incrementAndGet();
+        return (Result) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Result.class}, (proxy, method, args) -> {
+            if (method.getName().equals("forEachRemaining")) {
+                @SuppressWarnings("unchecked")
+                Consumer<Record> consumer = (Consumer<Record>) args[0];
+                result.forEachRemaining(record -> consumer.accept(count(record)));
+                return null;
+            }
+            Object value = invoke(method, result, args);
+            if (method.getName().equals("next") || method.getName().equals("single")) {
+                count((Record) value);
+            } else if (method.getName().equals("stream")) {
+                return ((Stream<?>) value).peek(record -> count((Record) record));
+            } else if (method.getName().equals("list") && (args == null || args.length == 0)) {
+                ((List<?>) value).forEach(record -> count((Record) record));
+            }
+            return value;
+        });
+    }
+
+    private Record count(Record record) {
+        rows.incrementAndGet();
+        long size = 0;
+        for (Value value : record.values()) {
+            size += sizeOf(value);
+        }
+        bytes.addAndGet(size);
+        return record;
+    }
+
+    // An estimate of the size of a value as it is sent over the wire
+    private static long sizeOf(Object value) {
+        if (value instanceof Value v)
+            return sizeOf(v.asObject());
+        if (value instanceof String string)
+            return string.getBytes(StandardCharsets.UTF_8).length;
+        if (value instanceof Node node) {
+            long size = sizeOfEntity(node);
+            for (String label : node.labels()) {
+                size += label.length();
+            }
+            return size;
+        }
+        if (value instanceof Relationship relationship)
+            return sizeOfEntity(relationship) + relationship.type().length();
+        if (value instanceof Path path) {
+            long size = 0;
+            for (Path.Segment segment : path) {
+                size += sizeOf(segment.start()) + sizeOf(segment.relationship()) + sizeOf(segment.end());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 0;
+            for (Object element : collection) {
+                size += sizeOf(element);
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        return value == null || value instanceof Boolean ? 1 : 8;
+    }
+
+    private static long sizeOfEntity(Entity entity) {
+        long size = entity.elementId().length();
+        for (String key : entity.keys()) {
+            size += key.length() + sizeOf(entity.get(key));
+        }
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, ResultWrapper wrapper) {
+        InvocationHandler handler = (proxy, method, args) -> wrapper.wrap(method.getName(), invoke(method, target, args));
+        return (T) Proxy.newProxyInstance(QueryRecorder.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface ResultWrapper {
+        Object wrap(String method, Object result);
+    }
+
+    public record Snapshot(long queries, long rows, long bytes) {
+    }
+}
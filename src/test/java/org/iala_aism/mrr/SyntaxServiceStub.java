@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.websocket.server.WsSci;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// A stub of the syntax service that answers every syntax creation request with an OK result. The endpoint is created
+// by the WebSocket container, so the state of the stub is static and only one stub can run at a time.
+public class SyntaxServiceStub implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+    private static final List<Session> SESSIONS = new ArrayList<>();
+    private static volatile Consumer<JsonNode> onRequest = request -> {
+    };
+
+    private final Tomcat tomcat;
+
+    private SyntaxServiceStub(Tomcat tomcat) {
+        this.tomcat = tomcat;
+    }
+
+    // The given consumer is called with every request before it is answered, like the real service stores the syntax first
+    public static SyntaxServiceStub start(Consumer<JsonNode> onRequest) throws IOException, LifecycleException {
+        SyntaxServiceStub.onRequest = onRequest;
+        CONNECTIONS.set(0);
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("syntax-stub").toString());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        Context context = tomcat.addContext("", null);
+        context.addServletContainerInitializer(new WsSci(), Set.of(StubEndpoint.class));
+        // Requests that no servlet is mapped to are answered with 404 before the upgrade filter sees them
+        Tomcat.addServlet(context, "default", new HttpServlet() {
+        });
+        context.addServletMappingDecoded("/", "default");
+        tomcat.start();
+        return new SyntaxServiceStub(tomcat);
+    }
+
+    public String url() {
+        return "ws://localhost:" + tomcat.getConnector().getLocalPort() + "/syntax";
+    }
+
+    public int connections() {
+        return CONNECTIONS.get();
+    }
+
+    public void resetConnections() {
+        CONNECTIONS.set(0);
+    }
+
+    public void dropConnections() throws IOException {
+        synchronized (SESSIONS) {
+            for (Session session : SESSIONS) {
+                if (session.isOpen())
+                    session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "restart"));
+            }
+            SESSIONS.clear();
+        }
+    }
+
+    @Override
+    public void close() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    @ServerEndpoint("/syntax")
+    public static class StubEndpoint {
+
+        @OnOpen
+        public void onOpen(Session session) {
+            CONNECTIONS.incrementAndGet();
+            synchronized (SESSIONS) {
+                SESSIONS.add(session);
+            }
+        }
+
+        @OnMessage
+        public void onMessage(Session session, String message) throws IOException {
+            JsonNode request = MAPPER.readTree(message);
+            onRequest.accept(request);
+            ObjectNode result = MAPPER.createObjectNode()
+                    .put("code", "OK")
+                    .put("namespace", request.get("namespace").asText())
+                    .put("regex", "^.*$")
+                    .put("correlation_id", request.get("correlation_id").asText());
+            synchronized (session) {
+                session.getBasicRemote().sendText(MAPPER.writeValueAsString(result));
+            }
+        }
+    }
+}
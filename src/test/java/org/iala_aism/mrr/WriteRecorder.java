@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Records which nodes and relationships every committed transaction of the embedded database has written
+public class WriteRecorder implements TransactionEventListener<Void> {
+
+    private final List<Writes> transactions = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Void beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+        Set<String> nodes = new HashSet<>();
+        Set<String> relationships = new HashSet<>();
+        data.createdNodes().forEach(node -> nodes.add(node.getElementId()));
+        data.deletedNodes().forEach(node -> nodes.add(node.getElementId()));
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+            nodes.add(entry.entity().getElementId());
+        }
+        for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+            nodes.add(entry.entity().getElementId());
+        }
+        for (LabelEntry entry : data.assignedLabels()) {
+            nodes.add(entry.node().getElementId());
+        }
+        for (LabelEntry entry : data.removedLabels()) {
+            nodes.add(entry.node().getElementId());
+        }
+        data.createdRelationships().forEach(relationship -> relationships.add(relationship.getElementId()));
+        data.deletedRelationships().forEach(relationship -> relationships.add(relationship.getElementId()));
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+            relationships.add(entry.entity().getElementId());
+        }
+        if (!nodes.isEmpty() || !relationships.isEmpty())
+            transactions.add(new Writes(nodes.size(), relationships.size()));
+        return null;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Void state, GraphDatabaseService databaseService) {
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Void state, GraphDatabaseService databaseService) {
+    }
+
+    public void reset() {
+        transactions.clear();
+    }
+
+    // The sum of the writes of all transactions committed since the last reset
+    public Writes total() {
+        return new Writes(transactions.stream().mapToInt(Writes::nodes).sum(),
+                transactions.stream().mapToInt(Writes::relationships).sum());
+    }
+
+    public record Writes(int nodes, int relationships) {
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.utils.AccessControlUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// The check that guards every write, against a token that lists the given number of managed namespaces. The MRN is
+// under the last of them, so all of them are looked at. The batch check is of a chunk of resources under that namespace.
+@State(Scope.Thread)
+public class AccessControlBenchmark extends BenchmarkSupport {
+
+    @Param({"1", "100"})
+    private int managedNamespaces;
+
+    private final AccessControlUtil accessControlUtil = new AccessControlUtil();
+    private String mrn;
+    private List<String> chunk;
+
+    @Setup
+    public void setUp() {
+        // The debug logging of the checks is not what is measured
+        ((Logger) LoggerFactory.getLogger(AccessControlUtil.class)).setLevel(Level.INFO);
+        accessControlUtil.configureMatchers(new SimpleMeterRegistry(), 10000L, Duration.ofHours(1));
+        List<String> namespaces = new ArrayList<>(managedNamespaces);
+        for (int i = 0; i < managedNamespaces; i++) {
+            namespaces.add("urn:mrn:iala:org" + i);
+        }
+        mrn = namespaces.get(managedNamespaces - 1) + ":aton:buoy:1";
+        chunk = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            chunk.add(namespaces.get(managedNamespaces - 1) + ":aton:buoy:" + i);
+        }
+        Jwt jwt = Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject("user")
+                .jti("token-id")
+                .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                .claim("manages_namespaces", namespaces)
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, List.of()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public boolean canManageNamespace() {
+        return accessControlUtil.canManageNamespace(mrn);
+    }
+
+    @Benchmark
+    public boolean canManageAll() {
+        return accessControlUtil.canManageAll(chunk);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.benchmarks;
+
+import org.iala_aism.mrr.services.NamespaceSyntaxService;
+import org.iala_aism.mrr.utils.NamespaceTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Finding the nearest delegation or syntax definition of an MRN. The trie is what MrrService.searchForEarlierMrr and
+// the syntax lookups use, the segment stripping is how the parent namespaces were looked up one by one before.
+@State(Scope.Benchmark)
+public class NamespaceResolutionBenchmark extends BenchmarkSupport {
+
+    @Param({"100", "10000"})
+    private int namespaces;
+
+    private final NamespaceTrie<String> trie = new NamespaceTrie<>();
+    private final Map<String, String> map = new HashMap<>();
+    private String[] mrns;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < namespaces; i++) {
+            String namespace = "urn:mrn:iala:" + (i % 50) + ":" + i;
+            trie.put(namespace, namespace);
+            map.put(namespace, namespace);
+        }
+        mrns = new String[1024];
+        for (int i = 0; i < mrns.length; i++) {
+            int namespace = random.nextInt(namespaces);
+            // Some MRNs are not under any of the namespaces and have to be walked up to the root
+            mrns[i] = random.nextInt(4) == 0
+                    ? "urn:mrn:iho:s100:product:" + i
+                    : "urn:mrn:iala:" + (namespace % 50) + ":" + namespace + ":aton:buoy:" + i;
+        }
+    }
+
+    @Benchmark
+    public String trie() {
+        return trie.findNearest(nextMrn()).orElse(null);
+    }
+
+    @Benchmark
+    public String segmentStripping() {
+        String namespace = nextMrn();
+        while (true) {
+            String value = map.get(namespace);
+            if (value != null)
+                return value;
+            int end = namespace.lastIndexOf(':');
+            if (end < 0)
+                return null;
+            namespace = namespace.substring(0, end);
+        }
+    }
+
+    // The parent namespaces that the database lookups of syntax definitions and delegations are queried with
+    @Benchmark
+    public Set<String> namespacesOf() {
+        return NamespaceSyntaxService.namespacesOf(List.of(nextMrn()));
+    }
+
+    private String nextMrn() {
+        return mrns[next++ & (mrns.length - 1)];
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.benchmarks;
+
+import org.iala_aism.mrr.utils.SemanticVersion;
+import org.iala_aism.mrr.utils.SemverRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+// Picking the latest of the versions of an MRN and filtering them by a range, as is done for every resource that is
+// read back and for the range queries of the reactive API
+@State(Scope.Benchmark)
+public class SemanticVersionBenchmark extends BenchmarkSupport {
+
+    @Param({"10", "1000"})
+    private int versions;
+
+    private List<String> versionStrings;
+    private SemverRange range;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        versionStrings = new ArrayList<>(versions);
+        for (int i = 0; i < versions; i++) {
+            versionStrings.add(random.nextInt(10) + "." + random.nextInt(20) + "." + random.nextInt(100));
+        }
+        range = SemverRange.parse("^2.1.0 || ~5.3");
+    }
+
+    @Benchmark
+    public Optional<SemanticVersion> latest() {
+        return versionStrings.stream()
+                .map(SemanticVersion::tryParse)
+                .flatMap(Optional::stream)
+                .max(Comparator.naturalOrder());
+    }
+
+    @Benchmark
+    public long inRange() {
+        return versionStrings.stream()
+                .map(SemanticVersion::tryParse)
+                .flatMap(Optional::stream)
+                .filter(range::contains)
+                .count();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.model.dto.NamespaceSyntaxDTO;
+import org.iala_aism.mrr.model.dto.OwnerDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Writing the DTOs of the read API as JSON, with the object mapper configured as Spring configures it
+@State(Scope.Benchmark)
+public class SerializationBenchmark extends BenchmarkSupport {
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private MaritimeResourceDTO resource;
+    private List<MaritimeResourceDTO> page;
+    private NamespaceSyntaxDTO syntax;
+
+    @Setup
+    public void setUp() {
+        resource = resource(0);
+        page = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            page.add(resource(i));
+        }
+        syntax = new NamespaceSyntaxDTO("urn:mrn:iala", "namespace-specific-string = 1*(unreserved / pct-encoded)",
+                "urn:mrn:iala:([a-z0-9()+,\\-.:=@;$_!*']|%[0-9a-f]{2})+",
+                new OwnerDTO("IALA", "contact@iala-aism.org", "+33 1 34 51 70 01", "https://www.iala-aism.org",
+                        "10 rue des Gaudines, 78100 Saint-Germain-en-Laye", "France"),
+                "syntax-id", 1700000000000L);
+    }
+
+    @Benchmark
+    public byte[] resource() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(resource);
+    }
+
+    @Benchmark
+    public byte[] resourcePage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] syntax() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(syntax);
+    }
+
+    private static MaritimeResourceDTO resource(int i) {
+        return new MaritimeResourceDTO("urn:mrn:iala:aton:ca:ccg:buoy-" + i, "1.2." + i,
+                "https://aton.example.org/buoys/" + i, "Buoy " + i, "Lateral mark at the entrance of the harbour",
+                "resource-id-" + i, 1700000000000L);
+    }
+}
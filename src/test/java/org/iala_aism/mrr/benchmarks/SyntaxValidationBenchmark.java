@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.iala_aism.mrr.services.NamespaceSyntaxValidationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.regex.Pattern;
+
+// Validating the MRN of a resource against the syntax of its namespace when it is registered. The cached pattern is
+// what the registration does, compiling the regex each time is what it did before the patterns were cached.
+@State(Scope.Benchmark)
+public class SyntaxValidationBenchmark extends BenchmarkSupport {
+
+    private static final String MRN = "urn:mrn:iala:aton:ca:ccg:buoy-4521:light";
+
+    private final NamespaceSyntaxValidationService validationService = new NamespaceSyntaxValidationService();
+    private NamespaceSyntax syntax;
+
+    @Setup
+    public void setUp() {
+        validationService.setMeterRegistry(new SimpleMeterRegistry());
+        syntax = new NamespaceSyntax();
+        syntax.setId("syntax-id");
+        syntax.setMrnNamespace("urn:mrn:iala");
+        syntax.setRegex("urn:mrn:iala:(aton|pub|wwa):([a-z]{2}:)?([a-z0-9()+,\\-.:=@;$_!*']|%[0-9a-f]{2})+");
+    }
+
+    @Benchmark
+    public boolean cachedPattern() {
+        return validationService.matches(syntax, MRN);
+    }
+
+    @Benchmark
+    public boolean compiledPattern() {
+        return Pattern.compile("^" + syntax.getRegex() + "$").matcher(MRN).matches();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequestMetricsInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QueryTracker queryTracker = new QueryTracker();
+    private final RequestMetricsInterceptor interceptor = new RequestMetricsInterceptor(meterRegistry, queryTracker,
+            new ObjectMapper(), true, Duration.ZERO);
+    private final Driver driver = queryTracker.wrap(driverWithSession());
+
+    @Test
+    void timesOperationsByOutcomeAndCountsTheirQueries() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new Handler(), "lookup");
+
+        handle(handler, 200, 2);
+        handle(handler, 303, 1);
+        handle(handler, 303, 1);
+
+        assertThat(meterRegistry.get("mrr.requests").tags("operation", "Handler.lookup", "outcome", "200").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("mrr.requests").tags("operation", "Handler.lookup", "outcome", "303").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("mrr.requests.neo4j.queries").tag("operation", "Handler.lookup").summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    void reducesUnknownStatusesToTheirClass() throws Exception {
+        handle(new HandlerMethod(new Handler(), "lookup"), 503, 0);
+
+        assertThat(meterRegistry.get("mrr.requests").tag("outcome", "5xx").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reportsTheStatementsAndRowsOfTheRequestAsServerTiming() throws Exception {
+        MockHttpServletResponse response = handle(new HandlerMethod(new Handler(), "lookup"), 200, 3);
+
+        assertThat(response.getHeader(RequestMetricsInterceptor.SERVER_TIMING))
+                .startsWith("db;desc=\"Neo4j\";dur=")
+                .endsWith("db-statements;desc=\"3\", db-rows;desc=\"6\"");
+    }
+
+    @Test
+    void onlyCountsTheQueriesOfTheRequest() {
+        try (Session session = driver.session()) {
+            session.run("RETURN 1");
+        }
+
+        assertThat(queryTracker.end().count()).isZero();
+    }
+
+    private MockHttpServletResponse handle(HandlerMethod handler, int status, int queries) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, handler);
+        try (Session session = driver.session()) {
+            // One query on its own and the others in a transaction
+            if (queries > 0)
+                session.run("RETURN 1").list();
+            try (Transaction transaction = session.beginTransaction()) {
+                for (int i = 1; i < queries; i++) {
+                    transaction.run("RETURN 1").list();
+                }
+            }
+        }
+        response.setStatus(status);
+        interceptor.postHandle(request, response, handler, null);
+        interceptor.afterCompletion(request, response, handler, null);
+        return response;
+    }
+
+    // Every statement returns two rows
+    private static Driver driverWithSession() {
+        Driver driver = mock(Driver.class);
+        Session session = mock(Session.class);
+        Transaction transaction = mock(Transaction.class);
+        when(driver.session()).thenReturn(session);
+        when(session.beginTransaction()).thenReturn(transaction);
+        when(session.run(anyString())).thenAnswer(invocation -> resultWithTwoRows());
+        when(transaction.run(anyString())).thenAnswer(invocation -> resultWithTwoRows());
+        return driver;
+    }
+
+    private static Result resultWithTwoRows() {
+        List<Record> records = List.of(mock(Record.class), mock(Record.class));
+        Result result = mock(Result.class);
+        when(result.list()).thenReturn(records);
+        return result;
+    }
+
+    static class Handler {
+        public void lookup() {
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.components;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.SyntaxServiceStub;
+import org.iala_aism.mrr.model.SyntaxCreationRequest;
+import org.iala_aism.mrr.model.SyntaxCreationResult;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the client against a stub of the syntax service that answers every request with an OK result
+@Slf4j
+class SyntaxCreationClientTest {
+
+    private static SyntaxServiceStub stub;
+    private SyntaxCreationClient client;
+
+    @BeforeAll
+    static void startStub() throws Exception {
+        stub = SyntaxServiceStub.start(request -> {
+        });
+    }
+
+    @AfterAll
+    static void stopStub() throws Exception {
+        stub.close();
+    }
+
+    @BeforeEach
+    void createClient() {
+        stub.resetConnections();
+        client = new SyntaxCreationClient();
+        client.setMapper(new ObjectMapper());
+        client.setMeterRegistry(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(client, "webSocketUrl", stub.url());
+        ReflectionTestUtils.setField(client, "timeout", Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void closeClient() {
+        client.close();
+    }
+
+    @Test
+    void multiplexesConcurrentRequestsOverOneConnection() {
+        int requests = 1000;
+        long start = System.nanoTime();
+        List<CompletableFuture<SyntaxCreationResult>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            results.add(client.submit(request("urn:mrn:test:ns" + i)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+        long elapsed = System.nanoTime() - start;
+
+        for (int i = 0; i < requests; i++) {
+            SyntaxCreationResult result = results.get(i).join();
+            assertThat(result.getCode()).isEqualTo(SyntaxCreationStatus.OK);
+            assertThat(result.getNamespace()).isEqualTo("urn:mrn:test:ns" + i);
+        }
+        assertThat(stub.connections()).isEqualTo(1);
+        assertThat(client.pendingRequests()).isZero();
+        log.info("{} syntax creations in {} ms ({} per second)", requests, elapsed / 1_000_000,
+                requests * 1_000_000_000L / Math.max(elapsed, 1));
+    }
+
+    @Test
+    void reconnectsAfterTheConnectionIsLost() throws IOException {
+        assertThat(client.submit(request("urn:mrn:test:before")).join().getCode()).isEqualTo(SyntaxCreationStatus.OK);
+
+        stub.dropConnections();
+
+        // The first request after the connection was lost may still be sent before the client notices
+        SyntaxCreationResult result = client.submit(request("urn:mrn:test:after"))
+                .exceptionallyCompose(e -> client.submit(request("urn:mrn:test:after"))).join();
+        assertThat(result.getCode()).isEqualTo(SyntaxCreationStatus.OK);
+        assertThat(stub.connections()).isEqualTo(2);
+    }
+
+    private static SyntaxCreationRequest request(String namespace) {
+        return new SyntaxCreationRequest("abnf", namespace, "urn:mrn:test", null);
+    }
+}
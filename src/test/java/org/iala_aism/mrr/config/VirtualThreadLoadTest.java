@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares how many requests are in flight at once, and how long they take, when requests that mostly wait for the
+// database are handled on the Tomcat thread pool and on virtual threads. Each request makes sequential round trips,
+// like the namespace walk of a delegation lookup. Both modes run in the same JVM and thereby on the same heap.
+@Tag("load")
+@Slf4j
+class VirtualThreadLoadTest {
+
+    private static final int CLIENTS = 2000;
+    private static final int ROUND_TRIPS = 5;
+    private static final long ROUND_TRIP_MILLIS = 10;
+
+    @Test
+    void virtualThreadsKeepMoreRequestsInFlight() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        log.info("Platform threads: {} requests in flight at most, p99 latency {} ms", platform.maxInFlight(), platform.p99Millis());
+        log.info("Virtual threads: {} requests in flight at most, p99 latency {} ms", virtual.maxInFlight(), virtual.p99Millis());
+        assertThat(virtual.maxInFlight()).isGreaterThan(platform.maxInFlight());
+        assertThat(virtual.p99Millis()).isLessThan(platform.p99Millis());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Result run(boolean virtualThreads) throws Exception {
+        BlockingServlet servlet = new BlockingServlet();
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("load-test").toString());
+        tomcat.setPort(0);
+        if (virtualThreads) {
+            ((TomcatProtocolHandlerCustomizer<ProtocolHandler>) new ThreadingConfig().virtualThreadProtocolHandlerCustomizer())
+                    .customize(tomcat.getConnector().getProtocolHandler());
+        }
+        Context context = tomcat.addContext("", null);
+        Tomcat.addServlet(context, "blocking", servlet);
+        context.addServletMappingDecoded("/*", "blocking");
+        tomcat.start();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clients).build();
+            URI uri = URI.create("http://localhost:" + tomcat.getConnector().getLocalPort() + "/resource");
+            List<CompletableFuture<Long>> latencies = new ArrayList<>(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++) {
+                latencies.add(CompletableFuture.supplyAsync(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding());
+                        assertThat(response.statusCode()).isEqualTo(200);
+                    } catch (IOException | InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return System.nanoTime() - start;
+                }, clients));
+            }
+            long[] sorted = latencies.stream().mapToLong(CompletableFuture::join).sorted().toArray();
+            return new Result(servlet.maxInFlight.get(), sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1_000_000);
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private record Result(int maxInFlight, long p99Millis) {
+    }
+
+    private static class BlockingServlet extends HttpServlet {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                for (int i = 0; i < ROUND_TRIPS; i++) {
+                    Thread.sleep(ROUND_TRIP_MILLIS);
+                }
+                response.getWriter().write("{}");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.QueryBudget;
+import org.iala_aism.mrr.components.QueryTracker;
+import org.iala_aism.mrr.components.RequestMetricsInterceptor;
+import org.iala_aism.mrr.config.HttpCacheProperties;
+import org.iala_aism.mrr.exceptions.MrrExceptionResolver;
+import org.iala_aism.mrr.services.MaritimeResourceReadService;
+import org.iala_aism.mrr.services.MaritimeResourceRegistrationService;
+import org.iala_aism.mrr.services.MaritimeResourceService;
+import org.iala_aism.mrr.services.MrnFilterService;
+import org.iala_aism.mrr.services.MrrService;
+import org.iala_aism.mrr.services.ResourceResolutionCache;
+import org.iala_aism.mrr.utils.AccessControlUtil;
+import org.iala_aism.mrr.utils.HttpCachePolicy;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Keeps the read endpoints within their budget of round trips to the database
+@Import({MaritimeResourceReadService.class, ResourceResolutionCache.class, MrnFilterService.class})
+class MaritimeResourceControllerTest extends Neo4jHarnessTest {
+
+    private static final String NAMESPACE = "urn:mrn:budget";
+
+    @Autowired
+    private MaritimeResourceReadService readService;
+
+    @Autowired
+    private QueryTracker queryTracker;
+
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void createResources() {
+        clearDatabase();
+        execute("""
+                UNWIND range(1, 30) AS i
+                CREATE (:MaritimeResource {id: randomUUID(), mrn: '%s:resource' + i, version: '1.0.0', versionMajor: 1,
+                        versionMinor: 0, versionPatch: 0, location: 'https://example.com/' + i, name: 'Resource ' + i})
+                """.formatted(NAMESPACE));
+    }
+
+    @BeforeEach
+    void setUp() {
+        HttpCachePolicy httpCachePolicy = new HttpCachePolicy();
+        httpCachePolicy.setProperties(new HttpCacheProperties());
+        MaritimeResourceController controller = new MaritimeResourceController();
+        controller.setReadService(readService);
+        controller.setResourceService(mock(MaritimeResourceService.class));
+        controller.setRegistrationService(mock(MaritimeResourceRegistrationService.class));
+        controller.setMrrService(mock(MrrService.class));
+        controller.setAccessControlUtil(mock(AccessControlUtil.class));
+        controller.setHttpCachePolicy(httpCachePolicy);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new MrrExceptionResolver())
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .addInterceptors(new RequestMetricsInterceptor(new SimpleMeterRegistry(), queryTracker, new ObjectMapper(),
+                        true, Duration.ofMinutes(1)))
+                .build();
+    }
+
+    // The page and, as it is full, the total count
+    @Test
+    void readsAPageInTwoQueries() throws Exception {
+        mockMvc.perform(get("/resource/all").param("page", "0").param("size", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(20))
+                .andExpect(QueryBudget.atMost(2));
+    }
+
+    @Test
+    void listsTheStatementsOfARequestThatExceedsItsBudget() {
+        assertThatThrownBy(() -> mockMvc.perform(get("/resource/all").param("page", "0").param("size", "20"))
+                .andExpect(QueryBudget.atMost(1)))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("Expected at most 1 queries but 2 were run")
+                .hasMessageContaining("count(r)");
+    }
+}
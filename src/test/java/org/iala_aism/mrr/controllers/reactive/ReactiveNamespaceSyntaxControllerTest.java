@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.controllers.reactive;
+
+import org.iala_aism.mrr.config.HttpCacheProperties;
+import org.iala_aism.mrr.exceptions.MrrExceptionResolver;
+import org.iala_aism.mrr.model.MrrEntity;
+import org.iala_aism.mrr.model.NamespaceSyntax;
+import org.iala_aism.mrr.repositories.reactive.ReactiveMrrRepository;
+import org.iala_aism.mrr.repositories.reactive.ReactiveNamespaceSyntaxRepository;
+import org.iala_aism.mrr.services.MrrService;
+import org.iala_aism.mrr.utils.HttpCachePolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.reactive.context.AnnotationConfigReactiveWebApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactiveNamespaceSyntaxControllerTest {
+
+    private final ReactiveNamespaceSyntaxRepository repository = mock(ReactiveNamespaceSyntaxRepository.class);
+    private final ReactiveMrrRepository mrrRepository = mock(ReactiveMrrRepository.class);
+    private final MrrService mrrService = mock(MrrService.class);
+    private WebTestClient client;
+
+    // The controller is set up by a context, as a controller that is bound on its own still has its setters autowired
+    @BeforeEach
+    void setUp() {
+        HttpCachePolicy httpCachePolicy = new HttpCachePolicy();
+        httpCachePolicy.setProperties(new HttpCacheProperties());
+        AnnotationConfigReactiveWebApplicationContext context = new AnnotationConfigReactiveWebApplicationContext();
+        context.getBeanFactory().registerSingleton("repository", repository);
+        context.getBeanFactory().registerSingleton("mrrRepository", mrrRepository);
+        context.getBeanFactory().registerSingleton("mrrService", mrrService);
+        context.getBeanFactory().registerSingleton("httpCachePolicy", httpCachePolicy);
+        context.register(WebFluxConfig.class, ReactiveNamespaceSyntaxController.class, MrrExceptionResolver.class);
+        context.refresh();
+        client = WebTestClient.bindToApplicationContext(context).build();
+        when(mrrRepository.findNearest(any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void returnsAnExactMatchWithoutLookingForDelegations() {
+        when(repository.findNearest(any())).thenReturn(Mono.just(syntax("urn:mrn:iala")));
+
+        client.get().uri("/syntax/urn:mrn:iala").exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody().jsonPath("$.mrnNamespace").isEqualTo("urn:mrn:iala");
+        verify(mrrRepository, never()).findNearest(any());
+    }
+
+    @Test
+    void redirectsToTheMrrThatIsResponsibleForTheNamespace() {
+        when(repository.findNearest(any())).thenReturn(Mono.just(syntax("urn:mrn:iala")));
+        when(mrrRepository.findNearest(any())).thenReturn(Mono.just(new MrrEntity("urn:mrn:iala:aton", "https://mrr.example.org", null)));
+
+        client.get().uri("/syntax/urn:mrn:iala:aton:buoy").exchange()
+                .expectStatus().isSeeOther()
+                .expectHeader().location("https://mrr.example.org/syntax/urn:mrn:iala:aton:buoy");
+    }
+
+    @Test
+    void fallsBackToTheNearestSyntax() {
+        when(repository.findNearest(any())).thenReturn(Mono.just(syntax("urn:mrn:iala")));
+
+        client.get().uri("/syntax/urn:mrn:iala:aton:buoy").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.mrnNamespace").isEqualTo("urn:mrn:iala");
+    }
+
+    @Test
+    void returnsNotFoundWithoutAnySyntax() {
+        when(repository.findNearest(any())).thenReturn(Mono.empty());
+
+        client.get().uri("/syntax/urn:mrn:iho:s100").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void streamsAllSyntaxesUnderANamespace() {
+        when(repository.findAllStartingWithNamespace("urn:mrn:iala"))
+                .thenReturn(Flux.just(syntax("urn:mrn:iala"), syntax("urn:mrn:iala:aton")));
+
+        client.get().uri("/syntax/all/urn:mrn:iala").accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].mrnNamespace").isEqualTo("urn:mrn:iala")
+                .jsonPath("$[1].mrnNamespace").isEqualTo("urn:mrn:iala:aton");
+    }
+
+    private static NamespaceSyntax syntax(String mrnNamespace) {
+        NamespaceSyntax syntax = new NamespaceSyntax();
+        syntax.setId(mrnNamespace + "-id");
+        syntax.setMrnNamespace(mrnNamespace);
+        syntax.setAbnfSyntax("abnf");
+        syntax.setRegex("regex");
+        syntax.setLastModified(1700000000000L);
+        return syntax;
+    }
+
+    @EnableWebFlux
+    static class WebFluxConfig {
+    }
+}
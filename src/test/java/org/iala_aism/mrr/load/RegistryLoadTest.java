@@ -0,0 +1,355 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.SyntaxServiceStub;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.model.dto.MrrDTO;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the whole application against the embedded Neo4j database, an embedded Redis server and a stub of the syntax
+// service, and drives a mix of registry calls with many concurrent clients. The throughput and latency percentiles of
+// every endpoint are written as JSON to the report file. The load is configured with system properties:
+// load.clients, load.duration, load.warmup, load.resources, load.mix (weights by operation, e.g. "syntax=1,mrr=1")
+// and load.report.
+@Tag("load")
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "management.server.port=0")
+@Import(RegistryLoadTest.LoadTestConfig.class)
+class RegistryLoadTest {
+
+    private static final String NAMESPACE = "urn:mrn:load";
+    private static final String DELEGATED_NAMESPACE = NAMESPACE + ":delegated";
+    // The test decoder lets the token manage the namespace that is its value
+    private static final String TOKEN = NAMESPACE;
+    private static final String DEFAULT_MIX = "resource.latest=35,resource.version=15,resource.versions=10," +
+            "resource.delegated=5,resource.create=5,syntax=20,mrr=10";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int REDIS_PORT = freePort();
+    private static RedisServer redis;
+    private static SyntaxServiceStub syntaxService;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final AtomicLong createdResources = new AtomicLong();
+
+    @DynamicPropertySource
+    static void environment(DynamicPropertyRegistry registry) throws Exception {
+        redis = new RedisServer(REDIS_PORT);
+        redis.start();
+        // Like the real syntax service, the stub stores the syntax definition before it answers
+        syntaxService = SyntaxServiceStub.start(RegistryLoadTest::storeSyntax);
+        registry.add("spring.neo4j.uri", Neo4jHarnessTest.NEO4J::boltURI);
+        registry.add("spring.neo4j.authentication.username", () -> "neo4j");
+        registry.add("spring.neo4j.authentication.password", () -> "");
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", () -> REDIS_PORT);
+        registry.add("org.iala_aism.mrr.websocket-url", syntaxService::url);
+    }
+
+    @BeforeAll
+    static void clearDatabase() {
+        Neo4jHarnessTest.NEO4J.defaultDatabaseService()
+                .executeTransactionally("MATCH (n) WHERE NOT n:__MrrSchemaMigration DETACH DELETE n");
+    }
+
+    @AfterAll
+    static void stopEnvironment() throws Exception {
+        syntaxService.close();
+        redis.stop();
+    }
+
+    @Test
+    void registryUnderLoad() throws Exception {
+        int clients = Integer.getInteger("load.clients", 100);
+        Duration duration = Duration.parse(System.getProperty("load.duration", "PT30S"));
+        Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT5S"));
+        int resources = Integer.getInteger("load.resources", 1000);
+        Path reportFile = Path.of(System.getProperty("load.report", "target/load-test-report.json"));
+
+        seed(resources);
+        Map<String, Operation> operations = operations(resources);
+        List<Operation> mix = mix(operations, System.getProperty("load.mix", DEFAULT_MIX));
+
+        Instant measureFrom = Instant.now().plus(warmup);
+        Instant end = measureFrom.plus(duration);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                executor.submit(() -> {
+                    while (Instant.now().isBefore(end)) {
+                        Operation operation = mix.get(ThreadLocalRandom.current().nextInt(mix.size()));
+                        operation.run(httpClient, !Instant.now().isBefore(measureFrom));
+                    }
+                    return null;
+                });
+            }
+        }
+
+        Report report = new Report(clients, duration.toSeconds(), operations.values().stream()
+                .filter(operation -> operation.requests() > 0)
+                .map(operation -> operation.report(duration))
+                .toList());
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        MAPPER.writer(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile.toFile(), report);
+        log.info("Load test report written to {}:\n{}", reportFile.toAbsolutePath(),
+                MAPPER.writer(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report));
+
+        assertThat(report.endpoints()).isNotEmpty();
+        assertThat(report.endpoints()).allSatisfy(endpoint -> assertThat(endpoint.errors()).isZero());
+    }
+
+    // Registers the syntax of the namespace through the syntax creation queue, an MRR for a part of it and the resources
+    private void seed(int resources) throws Exception {
+        String syntax = MAPPER.createObjectNode()
+                .put("namespace", NAMESPACE)
+                .put("abnfSyntax", "namespace = \"" + NAMESPACE + "\" *(\":\" 1*(ALPHA / DIGIT / \"-\"))")
+                .toString();
+        HttpResponse<String> created = send(HttpRequest.newBuilder(uri("/syntax/"))
+                .header("Authorization", "Bearer " + TOKEN)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(syntax)).build());
+        assertThat(created.statusCode()).isEqualTo(202);
+        JsonNode status = MAPPER.readTree(send(authorized("/syntax/status/" + created.body() + "?wait=30").build()).body());
+        assertThat(status.get("code").asText()).isEqualTo(SyntaxCreationStatus.OK.name());
+
+        HttpResponse<String> mrr = send(authorized("/mrr")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(
+                        new MrrDTO(null, DELEGATED_NAMESPACE, "https://mrr.example.org", null)))).build());
+        assertThat(mrr.statusCode()).isEqualTo(200);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<CompletableFuture<Integer>> statuses = new ArrayList<>(resources);
+            for (int i = 0; i < resources; i++) {
+                HttpRequest request = createResource(resourceMrn(i), "1.0.0");
+                statuses.add(CompletableFuture.supplyAsync(() -> send(request).statusCode(), executor));
+            }
+            assertThat(statuses).allSatisfy(s -> assertThat(s.join()).isEqualTo(201));
+        }
+    }
+
+    private Map<String, Operation> operations(int resources) {
+        Supplier<String> seeded = () -> resourceMrn(ThreadLocalRandom.current().nextInt(resources));
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("resource.latest", new Operation("GET /resource/{mrn}/latest", Set.of(200),
+                () -> authorized("/resource/" + seeded.get() + "/latest").build()));
+        operations.put("resource.version", new Operation("GET /resource/{mrn}/{version}", Set.of(200),
+                () -> authorized("/resource/" + seeded.get() + "/1.0.0").build()));
+        operations.put("resource.versions", new Operation("GET /resource/{mrn}", Set.of(200),
+                () -> authorized("/resource/" + seeded.get()).build()));
+        operations.put("resource.delegated", new Operation("GET /resource/{mrn}/latest (delegated)", Set.of(303),
+                () -> authorized("/resource/" + DELEGATED_NAMESPACE + ":resource/latest").build()));
+        operations.put("resource.create", new Operation("POST /resource", Set.of(201),
+                () -> createResource(resourceMrn(resources + createdResources.getAndIncrement()), "1.0.0")));
+        operations.put("syntax", new Operation("GET /syntax/{mrn}", Set.of(200),
+                () -> authorized("/syntax/" + seeded.get()).build()));
+        operations.put("mrr", new Operation("GET /mrr/{mrnNamespace}", Set.of(200),
+                () -> authorized("/mrr/" + DELEGATED_NAMESPACE).build()));
+        return operations;
+    }
+
+    // Each operation appears as often as its weight, so that picking a random element follows the mix
+    private static List<Operation> mix(Map<String, Operation> operations, String weights) {
+        List<Operation> mix = new ArrayList<>();
+        for (String weight : weights.split(",")) {
+            String[] parts = weight.trim().split("=");
+            Operation operation = operations.get(parts[0].trim());
+            if (operation == null)
+                throw new IllegalArgumentException("Unknown operation " + parts[0] + ", expected one of " + operations.keySet());
+            for (int i = 0; i < Integer.parseInt(parts[1].trim()); i++) {
+                mix.add(operation);
+            }
+        }
+        return mix;
+    }
+
+    private HttpRequest createResource(String mrn, String version) {
+        try {
+            return authorized("/resource")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(new MaritimeResourceDTO(
+                            mrn, version, "https://resources.example.org/" + mrn, "Load test resource", null, null, null))))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(uri(path)).header("Authorization", "Bearer " + TOKEN);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String resourceMrn(long i) {
+        return NAMESPACE + ":resource-" + i;
+    }
+
+    private static void storeSyntax(JsonNode request) {
+        String namespace = request.get("namespace").asText();
+        Neo4jHarnessTest.NEO4J.defaultDatabaseService().executeTransactionally("""
+                MERGE (n:Namespace {mrnNamespace: $namespace}) ON CREATE SET n.id = randomUUID()
+                MERGE (s:NamespaceSyntax {mrnNamespace: $namespace}) ON CREATE SET s.id = randomUUID()
+                SET s.abnfSyntax = $abnf, s.regex = $regex, s.lastModified = timestamp()
+                MERGE (s)-[:DESCRIBES]->(n)
+                """, Map.of("namespace", namespace, "abnf", request.path("abnf").asText(""),
+                "regex", namespace + "(:[a-zA-Z0-9-]+)*"));
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Operation {
+        private final String endpoint;
+        private final Set<Integer> expectedStatuses;
+        private final Supplier<HttpRequest> request;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final LongAdder errors = new LongAdder();
+
+        private Operation(String endpoint, Set<Integer> expectedStatuses, Supplier<HttpRequest> request) {
+            this.endpoint = endpoint;
+            this.expectedStatuses = expectedStatuses;
+            this.request = request;
+        }
+
+        private void run(HttpClient httpClient, boolean measured) {
+            HttpRequest httpRequest = request.get();
+            long start = System.nanoTime();
+            boolean failed;
+            try {
+                failed = !expectedStatuses.contains(httpClient.send(httpRequest, HttpResponse.BodyHandlers.discarding()).statusCode());
+            } catch (IOException e) {
+                failed = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!measured)
+                return;
+            latencies.add(System.nanoTime() - start);
+            if (failed)
+                errors.increment();
+        }
+
+        private long requests() {
+            return latencies.size();
+        }
+
+        private EndpointReport report(Duration duration) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new EndpointReport(endpoint, sorted.length, errors.sum(),
+                    sorted.length / (double) Math.max(duration.toSeconds(), 1),
+                    percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999));
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            int index = Math.max((int) Math.ceil(sorted.length * percentile) - 1, 0);
+            return sorted[index] / 1_000_000.0;
+        }
+    }
+
+    record Report(int clients, long durationSeconds, List<EndpointReport> endpoints) {
+    }
+
+    record EndpointReport(String endpoint, long requests, long errors, double throughputPerSecond,
+                          double p50Millis, double p99Millis, double p999Millis) {
+    }
+
+    @TestConfiguration
+    static class LoadTestConfig {
+
+        // Tokens are not verified, so no identity provider is needed. A token manages the namespace that is its value.
+        @Bean
+        JwtDecoder loadTestJwtDecoder() {
+            return token -> Jwt.withTokenValue(token)
+                    .header("alg", "none")
+                    .subject("load-test")
+                    .issuedAt(Instant.now())
+                    .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                    .claim("manages_namespaces", List.of(token))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.QueryRecorder;
+import org.iala_aism.mrr.model.MaritimeResourceEntity;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.iala_aism.mrr.repositories.MaritimeResourceRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Compares what is fetched from the database when reading resources as entities and as flat DTOs
+@Slf4j
+@Import({MaritimeResourceReadService.class, ResourceResolutionCache.class, MrnFilterService.class})
+class MaritimeResourceReadServiceTest extends Neo4jHarnessTest {
+
+    private static final String MRN = "urn:mrn:test:ns17:resource2";
+
+    @Autowired
+    private MaritimeResourceRepository repository;
+
+    @Autowired
+    private MaritimeResourceReadService readService;
+
+    @Autowired
+    private QueryRecorder queryRecorder;
+
+    // A namespace with many sibling namespaces, each with a syntax definition, an MRR and some resources
+    @BeforeAll
+    static void createRegistry() {
+        clearDatabase();
+        execute("""
+                CREATE (root:Namespace {id: randomUUID(), mrnNamespace: 'urn:mrn:test'})
+                WITH root
+                UNWIND range(1, 200) AS i
+                CREATE (n:Namespace {id: randomUUID(), mrnNamespace: 'urn:mrn:test:ns' + i})-[:EXTENDS]->(root)
+                CREATE (o:Owner {id: randomUUID(), name: 'Owner ' + i, email: 'owner' + i + '@example.com'})
+                CREATE (o)-[:OWNS_NAMESPACE]->(:NamespaceSyntax {id: randomUUID(), mrnNamespace: n.mrnNamespace,
+                        abnfSyntax: 'namespace = "urn:mrn:test:ns' + i + '" *(":" 1*ALPHA)', regex: 'urn:mrn:test:ns' + i + '(:[a-z]+)*'})-[:DESCRIBES]->(n)
+                CREATE (o)-[:OWNS_MRR]->(:MRR {id: randomUUID(), mrnNamespace: n.mrnNamespace, endpoint: 'https://mrr' + i + '.example.com'})-[:CONTAINS]->(n)
+                WITH n
+                UNWIND range(1, 5) AS j
+                CREATE (r:Namespace {id: randomUUID(), mrnNamespace: n.mrnNamespace + ':resource' + j})-[:EXTENDS]->(n)
+                CREATE (:MaritimeResource {id: randomUUID(), mrn: r.mrnNamespace, version: '1.0.0', versionMajor: 1,
+                        versionMinor: 0, versionPatch: 0, location: 'https://example.com/' + j, name: 'Resource ' + j,
+                        description: 'A resource used to measure what is read'})-[:FOLLOWS]->(r)
+                """);
+    }
+
+    @Test
+    void readsOnlyTheResourceProperties() {
+        QueryRecorder.Snapshot entity = measure(() -> repository.getByMrnAndVersion(MRN, "1.0.0").map(MaritimeResourceDTO::new));
+        QueryRecorder.Snapshot flat = measure(() -> readService.getByMrnAndVersion(MRN, "1.0.0"));
+        report("GET /resource/{mrn}/{version}", entity, flat);
+
+        assertThat(readService.getByMrnAndVersion(MRN, "1.0.0")).get()
+                .extracting(MaritimeResourceDTO::getMrn, MaritimeResourceDTO::getVersion, MaritimeResourceDTO::getName)
+                .containsExactly(MRN, "1.0.0", "Resource 2");
+        assertThat(flat.rows()).isEqualTo(1);
+        assertThat(flat.bytes()).isLessThan(entity.bytes());
+    }
+
+    @Test
+    void readsOnlyTheResourcePropertiesOfAPage() {
+        PageRequest page = PageRequest.of(0, 20);
+        QueryRecorder.Snapshot entity = measure(() -> repository.findAll(page).map(MaritimeResourceDTO::new));
+        QueryRecorder.Snapshot flat = measure(() -> readService.getAll(page));
+        report("GET /resource/all", entity, flat);
+
+        assertThat(readService.getAll(page).getContent()).hasSize(20);
+        assertThat(flat.rows()).isLessThanOrEqualTo(21);
+        assertThat(flat.bytes()).isLessThan(entity.bytes());
+    }
+
+    private QueryRecorder.Snapshot measure(Supplier<?> read) {
+        queryRecorder.reset();
+        Object result = read.get();
+        assertThat(result).isNotEqualTo(Optional.empty());
+        return queryRecorder.snapshot();
+    }
+
+    private static void report(String request, QueryRecorder.Snapshot entity, QueryRecorder.Snapshot flat) {
+        log.info("{}: entities read {} rows and {} bytes in {} queries, DTOs read {} rows and {} bytes in {} queries",
+                request, entity.rows(), entity.bytes(), entity.queries(), flat.rows(), flat.bytes(), flat.queries());
+    }
+}
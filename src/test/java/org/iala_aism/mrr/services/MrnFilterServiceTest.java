@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.QueryRecorder;
+import org.iala_aism.mrr.model.MaritimeResourceEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import({MaritimeResourceService.class, MaritimeResourceReadService.class, NamespaceService.class,
+        ResourceResolutionCache.class, MrnFilterService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MrnFilterServiceTest extends Neo4jHarnessTest {
+
+    @Autowired
+    private MrnFilterService mrnFilter;
+
+    @Autowired
+    private MaritimeResourceService resourceService;
+
+    @Autowired
+    private MaritimeResourceReadService readService;
+
+    @Autowired
+    private QueryRecorder queryRecorder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void buildFilter() {
+        clearDatabase();
+        execute("""
+                UNWIND range(1, 1000) AS i
+                CREATE (:MaritimeResource {id: randomUUID(), mrn: 'urn:mrn:test:resource' + i, version: '1.0.0',
+                        versionMajor: 1, versionMinor: 0, versionPatch: 0})
+                """);
+        ReflectionTestUtils.setField(mrnFilter, "enabled", true);
+        mrnFilter.rebuild();
+    }
+
+    // Registered MRNs never reach the probe and unknown ones only the probe, unless they are false positives
+    @Test
+    void answersUnknownMrnsWithASingleProbe() {
+        queryRecorder.reset();
+        assertThat(IntStream.rangeClosed(1, 1000)).allMatch(i -> mrnFilter.mightExist("urn:mrn:test:resource" + i));
+        assertThat(queryRecorder.snapshot().queries()).isZero();
+
+        assertThat(IntStream.rangeClosed(1, 1000)).allMatch(i -> readService.getLatestByMrn("urn:mrn:test:unknown" + i).isEmpty());
+        assertThat(queryRecorder.snapshot().queries()).isEqualTo(1000);
+        assertThat(meterRegistry.get("mrr.mrn.filter.rejections").counter().count()).isGreaterThan(950);
+    }
+
+    // Another node wrote the resource, and its announcement has not arrived or was lost
+    @Test
+    void findsRegistrationsOfOtherNodes() {
+        execute("""
+                CREATE (:MaritimeResource {id: randomUUID(), mrn: 'urn:mrn:test:elsewhere', version: '1.0.0',
+                        versionMajor: 1, versionMinor: 0, versionPatch: 0})
+                """);
+
+        assertThat(readService.getLatestByMrn("urn:mrn:test:elsewhere")).isPresent();
+        assertThat(readService.getAllByMrn("urn:mrn:test:elsewhere", Pageable.ofSize(20))).hasSize(1);
+    }
+
+    @Test
+    void knowsRegistrationsRightAway() {
+        resourceService.save(new MaritimeResourceEntity("urn:mrn:test:new", "1.0.0", "https://example.com", "Resource", null));
+
+        assertThat(readService.getLatestByMrn("urn:mrn:test:new")).isPresent();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.model.MaritimeResourceEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Registers resources in parallel under namespaces that do not exist yet, so that many transactions race to create the
+// same namespaces, and checks that each namespace and edge is created exactly once
+@Slf4j
+@Import({MaritimeResourceService.class, NamespaceService.class, ResourceResolutionCache.class, MrnFilterService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class NamespaceMergeStressTest extends Neo4jHarnessTest {
+
+    private static final int REGISTRATIONS = 4000;
+    private static final int THREADS = 32;
+    private static final int ORGANIZATIONS = 8;
+    private static final int UNITS = 64;
+
+    @Autowired
+    private MaritimeResourceService resourceService;
+
+    @BeforeEach
+    void clear() {
+        clearDatabase();
+    }
+
+    @Test
+    void parallelRegistrationsDoNotDuplicateNamespaces() throws Exception {
+        AtomicInteger retries = new AtomicInteger();
+        List<Future<?>> registrations = new ArrayList<>(REGISTRATIONS);
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < REGISTRATIONS; i++) {
+                String mrn = "urn:mrn:stress:org" + i % ORGANIZATIONS + ":unit" + i % UNITS + ":resource" + i;
+                registrations.add(executor.submit(() -> register(mrn, retries)));
+            }
+            for (Future<?> registration : registrations) {
+                registration.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.info("Registered {} resources with {} threads in {} s ({} registrations/s, {} retries)",
+                REGISTRATIONS, THREADS, String.format("%.2f", seconds), String.format("%.0f", REGISTRATIONS / seconds), retries.get());
+
+        // urn, urn:mrn, urn:mrn:stress, the organizations, the units and a namespace per resource
+        long expectedNamespaces = 3 + ORGANIZATIONS + UNITS + REGISTRATIONS;
+        assertThat(count("MATCH (r:MaritimeResource) RETURN count(r)")).isEqualTo(REGISTRATIONS);
+        assertThat(count("MATCH (n:Namespace) RETURN count(n)")).isEqualTo(expectedNamespaces);
+        assertThat(count("MATCH (n:Namespace) RETURN count(DISTINCT n.mrnNamespace)")).isEqualTo(expectedNamespaces);
+        assertThat(count("MATCH (:Namespace)-[e:EXTENDS]->(:Namespace) RETURN count(e)")).isEqualTo(expectedNamespaces - 1);
+        assertThat(count("MATCH (n:Namespace) WHERE n.mrnNamespace <> 'urn' AND NOT (n)-[:EXTENDS]->() RETURN count(n)")).isZero();
+    }
+
+    // Transient failures, such as a detected deadlock, are retried the way a client would retry them
+    private void register(String mrn, AtomicInteger retries) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                resourceService.save(new MaritimeResourceEntity(mrn, "1.0.0", "https://example.com", "Resource", null));
+                return;
+            } catch (TransientDataAccessException e) {
+                if (attempt == 5)
+                    throw e;
+                retries.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.iala_aism.mrr.services;
+
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.components.QueryTracker;
+import org.iala_aism.mrr.repositories.MaritimeResourceRepository;
+import org.iala_aism.mrr.repositories.MrrRepository;
+import org.iala_aism.mrr.repositories.NamespaceRepository;
+import org.iala_aism.mrr.repositories.NamespaceSyntaxRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.summary.Plan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Explains the statements that are actually run for the queries of the registry to check that none of them has to scan
+// all nodes with a label
+class QueryIndexTest extends Neo4jHarnessTest {
+
+    // Queries run through the Neo4jClient, which are explained with the parameters below
+    private static final Map<String, String> CLIENT_QUERIES = Map.ofEntries(
+            Map.entry("delegation", MrrService.DELEGATION),
+            Map.entry("createMrr", MrrService.CREATE_MRR),
+            Map.entry("updateEndpoint", MrrService.UPDATE_ENDPOINT),
+            Map.entry("nearestSyntax", NamespaceSyntaxService.NEAREST_SYNTAX),
+            Map.entry("stampSyntax", NamespaceSyntaxService.STAMP_SYNTAX),
+            Map.entry("mrnsAfter", MrnFilterService.MRNS_AFTER),
+            Map.entry("probe", MrnFilterService.PROBE),
+            Map.entry("mergeNamespaces", NamespaceService.MERGE_NAMESPACES),
+            Map.entry("createResources", MaritimeResourceService.CREATE_RESOURCES),
+            Map.entry("deleteByMrnAndVersion", MaritimeResourceService.DELETE_BY_MRN_AND_VERSION),
+            Map.entry("deleteById", MaritimeResourceService.DELETE_BY_ID),
+            Map.entry("readById", MaritimeResourceReadService.BY_ID),
+            Map.entry("readByMrnAndVersion", MaritimeResourceReadService.BY_MRN_AND_VERSION),
+            Map.entry("readLatestByMrn", MaritimeResourceReadService.LATEST_BY_MRN),
+            Map.entry("readByMrn", MaritimeResourceReadService.BY_MRN + MaritimeResourceReadService.RETURN_FIELDS),
+            Map.entry("readByMrnInRange", MaritimeResourceReadService.BY_MRN_IN_RANGE + MaritimeResourceReadService.RETURN_FIELDS),
+            Map.entry("readStartingWithNamespace", MaritimeResourceReadService.STARTING_WITH_NAMESPACE + MaritimeResourceReadService.RETURN_FIELDS),
+            Map.entry("readStartingWithNamespaceAfter", MaritimeResourceReadService.STARTING_WITH_NAMESPACE_AFTER));
+
+    // Calls of the repositories, whose statements are recorded as Spring Data runs them
+    private static final Map<String, Consumer<QueryIndexTest>> REPOSITORY_CALLS = Map.ofEntries(
+            Map.entry("getByMrnAndVersion", test -> test.resourceRepository.getByMrnAndVersion("urn:mrn:test:1:r", "1.0.1")),
+            Map.entry("getByMrn", test -> test.resourceRepository.getByMrn("urn:mrn:test:1:r")),
+            Map.entry("findResourceById", test -> test.resourceRepository.findById("id")),
+            Map.entry("getByMrnNamespace", test -> test.mrrRepository.getByMrnNamespace("urn:mrn:test:1")),
+            Map.entry("findMrnNamespaceById", test -> test.mrrRepository.findMrnNamespaceById("id")),
+            Map.entry("findFirstWithinNamespace", test -> test.mrrRepository.findFirstWithinNamespace("urn:mrn:test:1")),
+            Map.entry("deleteByMrnNamespace", test -> test.mrrRepository.deleteByMrnNamespace("urn:mrn:test:none")),
+            Map.entry("findNamespaceByMrnNamespace", test -> test.namespaceRepository.findByMrnNamespace("urn:mrn:test:1")),
+            Map.entry("findSyntaxByMrnNamespace", test -> test.syntaxRepository.findByMrnNamespace("urn:mrn:test:1")),
+            Map.entry("findAllByMrnNamespaceStartingWith", test -> test.syntaxRepository
+                    .findAllByMrnNamespaceStartingWith("urn:mrn:test:1", PageRequest.of(1, 5))),
+            Map.entry("findAllByMrnNamespaceIn", test -> test.syntaxRepository
+                    .findAllByMrnNamespaceIn(List.of("urn:mrn:test", "urn:mrn:test:1"))),
+            Map.entry("findIdsByMrnNamespaceStartingWithAfter", test -> test.syntaxRepository
+                    .findIdsByMrnNamespaceStartingWithAfter("urn:mrn:test", "urn:mrn:test:1", "id", 20)));
+
+    private static Driver driver;
+
+    @Autowired
+    private QueryTracker queryTracker;
+    @Autowired
+    private MaritimeResourceRepository resourceRepository;
+    @Autowired
+    private MrrRepository mrrRepository;
+    @Autowired
+    private NamespaceRepository namespaceRepository;
+    @Autowired
+    private NamespaceSyntaxRepository syntaxRepository;
+
+    @BeforeAll
+    static void seedDatabase() {
+        // The planner only prefers indexes once there is some data to choose between
+        clearDatabase();
+        execute("""
+                UNWIND range(1, 2000) AS i
+                CREATE (n:Namespace {id: randomUUID(), mrnNamespace: 'urn:mrn:test:' + i})
+                CREATE (:NamespaceSyntax {id: randomUUID(), mrnNamespace: n.mrnNamespace})-[:DESCRIBES]->(n)
+                CREATE (:MRR {id: randomUUID(), mrnNamespace: n.mrnNamespace, endpoint: 'https://example.com'})-[:CONTAINS]->(n)
+                CREATE (:MaritimeResource {id: randomUUID(), mrn: n.mrnNamespace + ':r', version: '1.0.' + i,
+                        versionMajor: 1, versionMinor: 0, versionPatch: i})-[:FOLLOWS]->(n)
+                """);
+        driver = GraphDatabase.driver(NEO4J.boltURI(), AuthTokens.none());
+    }
+
+    @AfterAll
+    static void clearSeed() {
+        driver.close();
+        clearDatabase();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("clientQueries")
+    void clientQueriesUseIndexes(String name, String query) {
+        assertThat(operators(query, parameters())).as(name)
+                .noneMatch(QueryIndexTest::scansLabel);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryCalls")
+    void repositoryQueriesUseIndexes(String name) {
+        queryTracker.begin();
+        REPOSITORY_CALLS.get(name).accept(this);
+        List<QueryTracker.Statement> statements = queryTracker.end().statements();
+
+        assertThat(statements).as(name).isNotEmpty();
+        for (QueryTracker.Statement statement : statements) {
+            assertThat(operators(statement.cypher(), statement.parameters())).as("%s: %s", name, statement.cypher())
+                    .noneMatch(QueryIndexTest::scansLabel);
+        }
+    }
+
+    static Stream<Object[]> clientQueries() {
+        return CLIENT_QUERIES.entrySet().stream().map(entry -> new Object[]{entry.getKey(), entry.getValue()});
+    }
+
+    static Stream<String> repositoryCalls() {
+        return REPOSITORY_CALLS.keySet().stream();
+    }
+
+    private static boolean scansLabel(String operator) {
+        return operator.startsWith("NodeByLabelScan") || operator.startsWith("AllNodesScan");
+    }
+
+    // Values for all parameters used by the client queries, as explaining a query still requires its parameters
+    private static Map<String, Object> parameters() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", "id");
+        parameters.put("mrn", "urn:mrn:test:1:r");
+        parameters.put("version", "1.0.1");
+        parameters.put("mrnNamespace", "urn:mrn:test:1");
+        parameters.put("namespace", "urn:mrn:test");
+        parameters.put("namespaces", List.of("urn:mrn:test", "urn:mrn:test:1"));
+        parameters.put("endpoint", "https://example.com");
+        parameters.put("mrr", Map.of("id", "id", "mrnNamespace", "urn:mrn:test:1", "endpoint", "https://example.com"));
+        parameters.put("owner", null);
+        parameters.put("afterMrn", "urn:mrn:test:1:r");
+        parameters.put("afterVersion", "1.0.1");
+        parameters.put("afterNamespace", "urn:mrn:test:1");
+        parameters.put("afterId", "id");
+        parameters.put("skip", 0);
+        parameters.put("limit", 20);
+        parameters.put("intervals", List.of(Map.of("lower", List.of(1, 0, 0), "upper", List.of(2, 0, 0))));
+        parameters.put("edges", List.of(Map.of("child", "urn:mrn:test:1", "parent", "urn:mrn:test")));
+        parameters.put("resources", List.of(Map.of("mrn", "urn:mrn:test:1:r", "version", "1.0.1")));
+        return parameters;
+    }
+
+    private static List<String> operators(String query, Map<String, Object> parameters) {
+        try (Session session = driver.session()) {
+            return operators(session.run("EXPLAIN " + query, parameters).consume().plan());
+        }
+    }
+
+    private static List<String> operators(Plan plan) {
+        List<String> operators = new ArrayList<>();
+        operators.add(plan.operatorType());
+        for (Plan child : plan.children()) {
+            operators.addAll(operators(child));
+        }
+        return operators;
+    }
+}
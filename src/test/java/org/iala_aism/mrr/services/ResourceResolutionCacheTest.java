@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.model.CacheInvalidation;
+import org.iala_aism.mrr.model.dto.MaritimeResourceDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResourceResolutionCacheTest {
+
+    private static final String MRN = "urn:mrn:test:resource";
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final SharedCacheService sharedCache = mock(SharedCacheService.class);
+    private ResourceResolutionCache cache;
+
+    @BeforeEach
+    void createCache() {
+        cache = new ResourceResolutionCache();
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "timeToLive", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "sharedTimeToLive", Duration.ofMinutes(10));
+        cache.setSharedCache(sharedCache);
+        when(sharedCache.get(any(), eq(MaritimeResourceDTO.class))).thenReturn(new SharedCacheService.Entry<>(Optional.empty(), "3"));
+        cache.setMeterRegistry(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void loadsEachKeyOnce() {
+        Supplier<Optional<MaritimeResourceDTO>> loader = loader(resource("1.0.0", "1"));
+
+        cache.getLatestByMrn(MRN, loader);
+        cache.getLatestByMrn(MRN, loader);
+        cache.getByMrnAndVersion(MRN, "1.0.0", loader);
+        cache.getById("1", loader);
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void cachesMissesUntilTheResourceIsRegistered() {
+        assertThat(cache.getByMrnAndVersion(MRN, "2.0.0", loader(null))).isEmpty();
+        assertThat(cache.getByMrnAndVersion(MRN, "2.0.0", loader(resource("2.0.0", "2")))).isEmpty();
+
+        cache.invalidate(MRN, "2.0.0", null);
+
+        assertThat(cache.getByMrnAndVersion(MRN, "2.0.0", loader(resource("2.0.0", "2")))).isPresent();
+    }
+
+    @Test
+    void invalidatesOnlyTheChangedVersion() {
+        cache.getLatestByMrn(MRN, loader(resource("1.0.0", "1")));
+        cache.getByMrnAndVersion(MRN, "1.0.0", loader(resource("1.0.0", "1")));
+        cache.getById("1", loader(resource("1.0.0", "1")));
+        cache.getByMrnAndVersion("urn:mrn:test:other", "1.0.0", loader(null));
+        loads.set(0);
+
+        cache.invalidate(MRN, "1.0.0", "1");
+        cache.getLatestByMrn(MRN, loader(null));
+        cache.getByMrnAndVersion(MRN, "1.0.0", loader(null));
+        cache.getById("1", loader(null));
+        cache.getByMrnAndVersion("urn:mrn:test:other", "1.0.0", loader(null));
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void readsThroughTheSharedCache() {
+        when(sharedCache.get("mrr:resources:l:" + MRN, MaritimeResourceDTO.class))
+                .thenReturn(new SharedCacheService.Entry<>(Optional.of(resource("1.0.0", "1")), "1"));
+
+        assertThat(cache.getLatestByMrn(MRN, loader(null))).isPresent();
+        cache.getByMrnAndVersion(MRN, "1.0.0", loader(resource("1.0.0", "1")));
+
+        assertThat(loads).hasValue(1);
+        verify(sharedCache).put(eq("mrr:resources:v:" + MRN + "/1.0.0"), eq("3"), any(MaritimeResourceDTO.class), eq(Duration.ofMinutes(10)));
+    }
+
+    @Test
+    void invalidatesTheSharedCacheAndTheOtherNodes() {
+        cache.invalidate(MRN, "1.0.0", "1");
+
+        verify(sharedCache).invalidate(List.of("mrr:resources:l:" + MRN, "mrr:resources:v:" + MRN + "/1.0.0", "mrr:resources:i:1"));
+        verify(sharedCache).publish(CacheInvalidation.Kind.RESOURCE, MRN, "1.0.0", "1");
+    }
+
+    @Test
+    void invalidatesWhenAnotherNodeChangesTheResource() {
+        cache.getLatestByMrn(MRN, loader(resource("1.0.0", "1")));
+
+        cache.onInvalidation(new CacheInvalidation("other", CacheInvalidation.Kind.RESOURCE, MRN, "2.0.0", null));
+        cache.getLatestByMrn(MRN, loader(resource("2.0.0", "2")));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private Supplier<Optional<MaritimeResourceDTO>> loader(MaritimeResourceDTO resource) {
+        return () -> {
+            loads.incrementAndGet();
+            return Optional.ofNullable(resource);
+        };
+    }
+
+    private static MaritimeResourceDTO resource(String version, String id) {
+        return new MaritimeResourceDTO(MRN, version, "https://example.com", "Resource", null, id, 0L);
+    }
+}
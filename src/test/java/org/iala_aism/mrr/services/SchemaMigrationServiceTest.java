@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Session;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaMigrationServiceTest {
+
+    private static Neo4j neo4j;
+    private static Driver driver;
+    private static SchemaMigrationService migrationService;
+
+    @BeforeAll
+    static void startDatabase() {
+        neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+        driver = GraphDatabase.driver(neo4j.boltURI(), AuthTokens.none());
+
+        // A namespace that was created twice, with the related nodes split between both copies
+        try (Session session = driver.session()) {
+            session.run("""
+                    CREATE (parent:Namespace {id: 'p', mrnNamespace: 'urn:mrn:test'})
+                    CREATE (a:Namespace {id: 'a', mrnNamespace: 'urn:mrn:test:org'})-[:EXTENDS]->(parent)
+                    CREATE (b:Namespace {id: 'b', mrnNamespace: 'urn:mrn:test:org'})-[:EXTENDS]->(parent)
+                    CREATE (:Namespace {id: 'c', mrnNamespace: 'urn:mrn:test:org:unit'})-[:EXTENDS]->(b)
+                    CREATE (:NamespaceSyntax {id: 's', mrnNamespace: 'urn:mrn:test:org'})-[:DESCRIBES]->(b)
+                    CREATE (:MRR {id: 'm', mrnNamespace: 'urn:mrn:test:org'})-[:CONTAINS]->(b)
+                    CREATE (:MaritimeResource {id: 'r1', mrn: 'urn:mrn:test:org:r', version: '1.0.0'})-[:FOLLOWS]->(a)
+                    CREATE (:MaritimeResource {id: 'r2', mrn: 'urn:mrn:test:org:r', version: '2.0.0'})-[:FOLLOWS]->(b)
+                    """).consume();
+        }
+
+        migrationService = new SchemaMigrationService();
+        migrationService.setDriver(driver);
+        migrationService.migrate();
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        driver.close();
+        neo4j.close();
+    }
+
+    @Test
+    void appliesEveryMigrationOnce() {
+        assertThat(migrationService.migrate()).isZero();
+        try (Session session = driver.session()) {
+            long applied = session.run("MATCH (m:__MrrSchemaMigration) RETURN count(m) AS applied").single().get("applied").asLong();
+            assertThat(applied).isEqualTo(SchemaMigrationService.MIGRATIONS.size());
+        }
+    }
+
+    @Test
+    void mergesDuplicateNamespaces() {
+        try (Session session = driver.session()) {
+            assertThat(session.run("MATCH (n:Namespace {mrnNamespace: 'urn:mrn:test:org'}) RETURN n.id AS id")
+                    .list(r -> r.get("id").asString())).containsExactly("a");
+            assertThat(session.run("""
+                    MATCH (n:Namespace {id: 'a'})
+                    RETURN [(n)-[:EXTENDS]->(p) | p.id] AS parents, [(c)-[:EXTENDS]->(n) | c.id] AS children,
+                           [(s)-[:DESCRIBES]->(n) | s.id] AS syntaxes, [(m)-[:CONTAINS]->(n) | m.id] AS mrrs,
+                           COLLECT { MATCH (r)-[:FOLLOWS]->(n) RETURN r.id ORDER BY r.id } AS resources
+                    """).single().asMap()).containsEntry("parents", List.of("p"))
+                    .containsEntry("children", List.of("c"))
+                    .containsEntry("syntaxes", List.of("s"))
+                    .containsEntry("mrrs", List.of("m"))
+                    .containsEntry("resources", List.of("r1", "r2"));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import org.iala_aism.mrr.Neo4jHarnessTest;
+import org.iala_aism.mrr.WriteRecorder;
+import org.iala_aism.mrr.model.MaritimeResourceEntity;
+import org.iala_aism.mrr.model.MrrEntity;
+import org.iala_aism.mrr.model.Owner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+// Checks that writes only touch the nodes they create or change, however large the namespace tree around them is
+@Import({MaritimeResourceService.class, MrrService.class, NamespaceService.class, ResourceResolutionCache.class, MrnFilterService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ShallowWriteTest extends Neo4jHarnessTest {
+
+    private static final WriteRecorder WRITES = new WriteRecorder();
+
+    @Autowired
+    private MaritimeResourceService resourceService;
+
+    @Autowired
+    private MrrService mrrService;
+
+    @BeforeAll
+    static void createNamespaceTree() {
+        clearDatabase();
+        execute("""
+                CREATE (root:Namespace {id: randomUUID(), mrnNamespace: 'urn:mrn:test'})
+                        -[:EXTENDS]->(:Namespace {id: randomUUID(), mrnNamespace: 'urn:mrn'})
+                        -[:EXTENDS]->(:Namespace {id: randomUUID(), mrnNamespace: 'urn'})
+                WITH root
+                UNWIND range(1, 100) AS i
+                CREATE (n:Namespace {id: randomUUID(), mrnNamespace: 'urn:mrn:test:ns' + i})-[:EXTENDS]->(root)
+                CREATE (:MRR {id: randomUUID(), mrnNamespace: n.mrnNamespace + ':mrr', endpoint: 'https://example.com'})
+                        -[:CONTAINS]->(:Namespace {id: randomUUID(), mrnNamespace: n.mrnNamespace + ':mrr'})-[:EXTENDS]->(n)
+                WITH n
+                UNWIND range(1, 10) AS j
+                CREATE (r:Namespace {id: randomUUID(), mrnNamespace: n.mrnNamespace + ':resource' + j})-[:EXTENDS]->(n)
+                CREATE (:MaritimeResource {id: randomUUID(), mrn: r.mrnNamespace, version: '1.0.0'})-[:FOLLOWS]->(r)
+                """);
+        NEO4J.databaseManagementService().registerTransactionEventListener(DEFAULT_DATABASE_NAME, WRITES);
+    }
+
+    @AfterAll
+    static void stopRecording() {
+        NEO4J.databaseManagementService().unregisterTransactionEventListener(DEFAULT_DATABASE_NAME, WRITES);
+    }
+
+    @BeforeEach
+    void resetWrites() {
+        WRITES.reset();
+    }
+
+    @Test
+    void registeringAResourceOnlyCreatesItsNodeAndEdge() {
+        resourceService.save(new MaritimeResourceEntity("urn:mrn:test:ns1:resource1", "2.0.0", "https://example.com", "Resource", null));
+
+        assertThat(WRITES.total()).isEqualTo(new WriteRecorder.Writes(1, 1));
+    }
+
+    @Test
+    void registeringAResourceUnderANewNamespaceAlsoCreatesTheNamespace() {
+        resourceService.save(new MaritimeResourceEntity("urn:mrn:test:ns2:new", "1.0.0", "https://example.com", "Resource", null));
+
+        // The resource, its namespace, the FOLLOWS edge and the EXTENDS edge to the existing parent
+        assertThat(WRITES.total()).isEqualTo(new WriteRecorder.Writes(2, 2));
+    }
+
+    @Test
+    void creatingAnMrrOnlyCreatesItsNodeOwnerAndEdges() {
+        Owner owner = new Owner();
+        owner.setName("Owner");
+        mrrService.create(new MrrEntity("urn:mrn:test:ns3:resource1", "https://mrr.example.com", owner));
+
+        // The MRR, its owner, the CONTAINS edge and the OWNS_MRR edge
+        assertThat(WRITES.total()).isEqualTo(new WriteRecorder.Writes(2, 2));
+    }
+
+    @Test
+    void updatingAnMrrOnlyWritesItsNode() {
+        MrrEntity mrr = mrrService.getByMrnNamespace("urn:mrn:test:ns4:mrr").orElseThrow();
+        WRITES.reset();
+
+        mrrService.updateEndpoint(mrr.getId(), "https://updated.example.com");
+
+        assertThat(WRITES.total()).isEqualTo(new WriteRecorder.Writes(1, 0));
+        assertThat(mrrService.getByMrnNamespace("urn:mrn:test:ns4:mrr")).get()
+                .extracting(MrrEntity::getEndpoint).isEqualTo("https://updated.example.com");
+    }
+}
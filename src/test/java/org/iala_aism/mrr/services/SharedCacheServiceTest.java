@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedCacheServiceTest {
+
+    private static final String KEY = "mrr:resources:l:urn:mrn:test:resource";
+
+    private final int port = freePort();
+    private RedisServer redis;
+    private JedisConnectionFactory connectionFactory;
+    private SharedCacheService sharedCache;
+
+    @BeforeEach
+    void startRedis() throws IOException {
+        redis = new RedisServer(port);
+        redis.start();
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        sharedCache = new SharedCacheService();
+        sharedCache.setRedisTemplate(redisTemplate);
+        sharedCache.setMapper(new ObjectMapper());
+        ReflectionTestUtils.setField(sharedCache, "nodeId", "node");
+        ReflectionTestUtils.setField(sharedCache, "retryAfter", Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @Test
+    void storesLoadedValues() {
+        SharedCacheService.Entry<Map> entry = sharedCache.get(KEY, Map.class);
+        sharedCache.put(KEY, entry.generation(), Map.of("version", "1.0.0"), Duration.ofMinutes(1));
+
+        assertThat(sharedCache.get(KEY, Map.class).value()).contains(Map.of("version", "1.0.0"));
+    }
+
+    // The load read the old state before the change was committed, but only tries to store it after the invalidation
+    @Test
+    void doesNotStoreValuesThatWereLoadedBeforeAnInvalidation() {
+        SharedCacheService.Entry<Map> entry = sharedCache.get(KEY, Map.class);
+        sharedCache.invalidate(List.of(KEY));
+        sharedCache.put(KEY, entry.generation(), Map.of("version", "1.0.0"), Duration.ofMinutes(1));
+
+        assertThat(sharedCache.get(KEY, Map.class).value()).isEmpty();
+    }
+
+    @Test
+    void catchesUpOnInvalidationsOnceRedisIsBack() throws Exception {
+        SharedCacheService.Entry<Map> entry = sharedCache.get(KEY, Map.class);
+        sharedCache.put(KEY, entry.generation(), Map.of("version", "1.0.0"), Duration.ofMinutes(1));
+        redis.stop();
+
+        // Until the retry delay has passed Redis is not even tried
+        assertThat(sharedCache.get(KEY, Map.class).value()).isEmpty();
+        long start = System.nanoTime();
+        sharedCache.invalidate(List.of(KEY));
+        assertThat(sharedCache.get(KEY, Map.class).generation()).isNull();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(100));
+
+        // The restarted server has lost its data, so the generation shows whether the invalidation was caught up on
+        redis.start();
+        Thread.sleep(300);
+        assertThat(sharedCache.get(KEY, Map.class).generation()).isEqualTo("1");
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.components.SyntaxCreationClient;
+import org.iala_aism.mrr.exceptions.MrrRestException;
+import org.iala_aism.mrr.model.SyntaxCreationJob;
+import org.iala_aism.mrr.model.SyntaxCreationResult;
+import org.iala_aism.mrr.model.SyntaxCreationResultRedis;
+import org.iala_aism.mrr.model.dto.SyntaxCreationDTO;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyntaxCreationServiceTest {
+
+    private static final String NAMESPACE = "urn:mrn:test:ns";
+
+    private final SyntaxCreationClient client = mock(SyntaxCreationClient.class);
+    private final SyntaxCreationQueue queue = mock(SyntaxCreationQueue.class);
+    private final SyntaxCreationStatusService statusService = mock(SyntaxCreationStatusService.class);
+    private final NamespaceSyntaxService syntaxService = mock(NamespaceSyntaxService.class);
+    private SyntaxCreationService service;
+
+    @BeforeEach
+    void createService() {
+        service = new SyntaxCreationService();
+        service.setClient(client);
+        service.setQueue(queue);
+        service.setCreationStatusService(statusService);
+        service.setNamespaceSyntaxService(syntaxService);
+        service.setMeterRegistry(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "queueCapacity", 10L);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryDelay", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(service, "maxRetryDelay", Duration.ofSeconds(3));
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofSeconds(30));
+        when(statusService.getById("status")).thenReturn(Optional.of(new SyntaxCreationResultRedis()));
+    }
+
+    @Test
+    void rejectsCreationsWhenTheQueueIsFull() {
+        when(queue.size()).thenReturn(10L);
+
+        assertThatThrownBy(() -> service.create(new SyntaxCreationDTO(NAMESPACE, null, "abnf", null), "/syntax/"))
+                .isInstanceOfSatisfying(MrrRestException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        verify(queue, never()).enqueue(any());
+    }
+
+    @Test
+    void storesTheResultOfTheSyntaxService() {
+        SyntaxCreationResult result = new SyntaxCreationResult();
+        result.setCode(SyntaxCreationStatus.OK);
+        result.setNamespace(NAMESPACE);
+        when(client.submit(any())).thenReturn(CompletableFuture.completedFuture(result));
+
+        SyntaxCreationQueue.Entry entry = entry(0);
+        service.process(entry);
+
+        verify(syntaxService).syntaxChanged(NAMESPACE);
+        verify(statusService).save(argThat(status -> status.getCode() == SyntaxCreationStatus.OK));
+        verify(queue).acknowledge(entry);
+        verify(queue, never()).retryLater(any(), any());
+    }
+
+    @Test
+    void retriesFailedAttemptsWithBackoff() {
+        when(client.submit(any())).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        service.process(entry(0));
+        service.process(entry(1));
+
+        verify(queue).retryLater(argThat(job -> job.getAttempt() == 1), eq(Duration.ofSeconds(2)));
+        // Capped by the maximum delay
+        verify(queue).retryLater(argThat(job -> job.getAttempt() == 2), eq(Duration.ofSeconds(3)));
+        verify(statusService, never()).save(any());
+    }
+
+    @Test
+    void givesUpAfterTheLastAttempt() {
+        when(client.submit(any())).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        SyntaxCreationQueue.Entry entry = entry(2);
+        service.process(entry);
+
+        verify(queue).deadLetter(argThat(job -> job.getAttempt() == 3));
+        verify(queue, never()).retryLater(any(), any());
+        verify(statusService).save(argThat(status -> status.getCode() == SyntaxCreationStatus.ERROR
+                && "The syntax service did not respond in time".equals(status.getMessage())));
+        verify(queue).acknowledge(entry);
+    }
+
+    private static SyntaxCreationQueue.Entry entry(int attempt) {
+        return new SyntaxCreationQueue.Entry(RecordId.autoGenerate(), new SyntaxCreationJob("status",
+                new SyntaxCreationDTO(NAMESPACE, "urn:mrn:test", "abnf", null), attempt, System.currentTimeMillis(), null));
+    }
+}
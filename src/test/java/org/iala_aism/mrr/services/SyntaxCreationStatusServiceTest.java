@@ -0,0 +1,94 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.iala_aism.mrr.model.SyntaxCreationResultRedis;
+import org.iala_aism.mrr.model.enums.SyntaxCreationStatus;
+import org.iala_aism.mrr.repositories.SyntaxCreationStatusRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SyntaxCreationStatusServiceTest {
+
+    private final Map<String, SyntaxCreationResultRedis> statuses = new HashMap<>();
+    private final SyntaxCreationStatusRepository repository = mock(SyntaxCreationStatusRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private SyntaxCreationStatusService service;
+
+    @BeforeEach
+    void createService() {
+        when(repository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(statuses.get(invocation.<String>getArgument(0))));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            SyntaxCreationResultRedis status = invocation.getArgument(0);
+            statuses.put(status.getId(), status);
+            return status;
+        });
+        service = new SyntaxCreationStatusService();
+        service.setRepository(repository);
+        service.setRedisTemplate(redisTemplate);
+        service.setMeterRegistry(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void completesWhenTheCreationFinishesOnAnyNode() {
+        service.save(status("1", SyntaxCreationStatus.CREATING));
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+
+        CompletableFuture<SyntaxCreationResultRedis> completion = service.awaitCompletion("1");
+        assertThat(completion).isNotDone();
+
+        service.save(status("1", SyntaxCreationStatus.OK));
+        verify(redisTemplate).convertAndSend(SyntaxCreationStatusService.CHANNEL, "1");
+        // The announcement reaches every node, including this one
+        service.onMessage(new DefaultMessage(SyntaxCreationStatusService.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "1".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(completion).isCompletedWithValueMatching(status -> status.getCode() == SyntaxCreationStatus.OK);
+    }
+
+    @Test
+    void completesRightAwayWhenTheCreationHasFinished() {
+        service.save(status("2", SyntaxCreationStatus.ERROR));
+
+        assertThat(service.awaitCompletion("2")).isCompletedWithValueMatching(status -> status.getCode() == SyntaxCreationStatus.ERROR);
+        assertThat(service.awaitCompletion("missing")).isCompletedWithValue(null);
+    }
+
+    private static SyntaxCreationResultRedis status(String id, SyntaxCreationStatus code) {
+        SyntaxCreationResultRedis status = new SyntaxCreationResultRedis(id);
+        status.setCode(code);
+        status.setNamespace("urn:mrn:test:ns");
+        return status;
+    }
+}
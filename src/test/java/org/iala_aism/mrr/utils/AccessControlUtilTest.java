@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessControlUtilTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AccessControlUtil accessControlUtil = new AccessControlUtil();
+
+    @BeforeEach
+    void setUp() {
+        accessControlUtil.configureMatchers(meterRegistry, 100L, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void compilesTheClaimsOncePerToken() {
+        authenticate("https://issuer.example.org", "token-1", Instant.now().plusSeconds(300), List.of("urn:mrn:mcp:org:dmc"));
+
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:mcp:org:dmc:service")).isTrue();
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:iala")).isFalse();
+        assertThat(accessControlUtil.canManageAll(List.of("urn:mrn:mcp:org:dmc:a", "urn:mrn:mcp:org:dmc:b"))).isTrue();
+        assertThat(accessControlUtil.canManageAll(List.of("urn:mrn:mcp:org:dmc:a", "urn:mrn:iala"))).isFalse();
+
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "mrr.access.matchers", "result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "mrr.access.matchers", "result", "hit")
+                .functionCounter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void keepsTheMatchersOfTokensApart() {
+        authenticate("https://issuer.example.org", "token-1", Instant.now().plusSeconds(300), List.of("urn:mrn:mcp"));
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:mcp:org")).isTrue();
+
+        authenticate("https://issuer.example.org", "token-2", Instant.now().plusSeconds(300), List.of("urn:mrn:iala"));
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:mcp:org")).isFalse();
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:iala:aton")).isTrue();
+    }
+
+    @Test
+    void keepsTheMatchersOfTokensWithTheSameIdFromOtherIssuersApart() {
+        authenticate("https://issuer.example.org", "token-1", Instant.now().plusSeconds(300), List.of("urn:mrn:mcp"));
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:mcp:org")).isTrue();
+
+        authenticate("https://other-issuer.example.org", "token-1", Instant.now().plusSeconds(300), List.of("urn:mrn:iala"));
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:mcp:org")).isFalse();
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:iala:aton")).isTrue();
+    }
+
+    @Test
+    void deniesWithoutAToken() {
+        assertThat(accessControlUtil.canManageNamespace("urn:mrn:mcp")).isFalse();
+        assertThat(accessControlUtil.canManageAll(List.of("urn:mrn:mcp"))).isFalse();
+    }
+
+    private static void authenticate(String issuer, String id, Instant expiresAt, List<String> namespaces) {
+        Jwt jwt = Jwt.withTokenValue("value-of-" + id)
+                .header("alg", "none")
+                .issuer(issuer)
+                .subject("user")
+                .jti(id)
+                .issuedAt(expiresAt.minusSeconds(600))
+                .expiresAt(expiresAt)
+                .claim("manages_namespaces", namespaces)
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt, List.of()));
+    }
+}
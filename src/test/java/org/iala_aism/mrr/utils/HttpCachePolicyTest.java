@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.iala_aism.mrr.config.HttpCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpCachePolicyTest {
+
+    private final HttpCachePolicy policy = new HttpCachePolicy();
+
+    @BeforeEach
+    void configure() {
+        HttpCacheProperties properties = new HttpCacheProperties();
+        properties.setNamespaces(List.of(namespace("urn:mrn:iala", Duration.ofMinutes(5)),
+                namespace("urn:mrn:iala:aton", Duration.ofHours(1))));
+        policy.setProperties(properties);
+    }
+
+    @Test
+    void usesTheLongestMatchingNamespace() {
+        assertThat(policy.cacheControlFor("urn:mrn:iala:aton:buoy").getHeaderValue()).isEqualTo("max-age=3600, public");
+        assertThat(policy.cacheControlFor("urn:mrn:iala:pub").getHeaderValue()).isEqualTo("max-age=300, public");
+        assertThat(policy.cacheControlFor("urn:mrn:iala:atonx").getHeaderValue()).isEqualTo("max-age=300, public");
+        assertThat(policy.cacheControlFor("urn:mrn:iho:s100").getHeaderValue()).isEqualTo("no-cache");
+    }
+
+    @Test
+    void etagsChangeWithTheContent() {
+        assertThat(HttpCachePolicy.etagOf("a", "b")).isEqualTo(HttpCachePolicy.etagOf("a", "b"));
+        assertThat(HttpCachePolicy.etagOf("a", "b")).isNotEqualTo(HttpCachePolicy.etagOf("a", "c"));
+        assertThat(HttpCachePolicy.etagOf("ab", "")).isNotEqualTo(HttpCachePolicy.etagOf("a", "b"));
+        assertThat(HttpCachePolicy.etagOf("a", null)).isNotEqualTo(HttpCachePolicy.etagOf("a", ""));
+    }
+
+    @Test
+    void addsTheValidatorsToTheResponse() {
+        ResponseEntity<String> response = policy.ok("urn:mrn:iala:aton:buoy", "body", 1700000000000L, "id", "1");
+
+        HttpHeaders headers = response.getHeaders();
+        assertThat(headers.getETag()).isEqualTo(HttpCachePolicy.etagOf("id", "1"));
+        assertThat(headers.getLastModified()).isEqualTo(1700000000000L);
+        assertThat(headers.getCacheControl()).isEqualTo("max-age=3600, public");
+    }
+
+    private static HttpCacheProperties.NamespacePolicy namespace(String namespace, Duration maxAge) {
+        HttpCacheProperties.NamespacePolicy policy = new HttpCacheProperties.NamespacePolicy();
+        policy.setNamespace(namespace);
+        policy.setMaxAge(maxAge);
+        return policy;
+    }
+}
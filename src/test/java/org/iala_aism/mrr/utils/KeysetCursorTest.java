@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void decodesEncodedKeys() {
+        String cursor = KeysetCursor.encode("urn:mrn:iala:aton:no:1", "1.10.0");
+
+        assertThat(cursor).matches("[A-Za-z0-9_-]+");
+        assertThat(KeysetCursor.decode(cursor, 2)).containsExactly("urn:mrn:iala:aton:no:1", "1.10.0");
+    }
+
+    @Test
+    void startsFromTheBeginningWithAnEmptyCursor() {
+        assertThat(KeysetCursor.decode("", 2)).containsExactly("", "");
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not a cursor!", 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(KeysetCursor.encode("urn:mrn:iala"), 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
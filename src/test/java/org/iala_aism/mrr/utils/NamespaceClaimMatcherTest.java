@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NamespaceClaimMatcherTest {
+
+    @Test
+    void matchesMrnsThatStartWithAClaim() {
+        NamespaceClaimMatcher matcher = NamespaceClaimMatcher.of(List.of("urn:mrn:mcp:org:dmc", "urn:mrn:iala:aton"));
+
+        assertThat(matcher.matches("urn:mrn:mcp:org:dmc:service:abc")).isTrue();
+        assertThat(matcher.matches("urn:mrn:iala:aton")).isTrue();
+        assertThat(matcher.matches("urn:mrn:iala")).isFalse();
+        assertThat(matcher.matches("urn:mrn:iho")).isFalse();
+        assertThat(matcher.matches(null)).isFalse();
+    }
+
+    // The claims have always been compared as plain prefixes, not segment by segment
+    @Test
+    void matchesPrefixesWithinASegment() {
+        NamespaceClaimMatcher matcher = NamespaceClaimMatcher.of(List.of("urn:mrn:mcp:org:dmc"));
+
+        assertThat(matcher.matches("urn:mrn:mcp:org:dmcx")).isTrue();
+    }
+
+    @Test
+    void ignoresBlankClaimsAndClaimsCoveredByOthers() {
+        NamespaceClaimMatcher matcher = NamespaceClaimMatcher.of(Arrays.asList("urn:mrn:mcp:org:dmc:service", " ", null, "urn:mrn:mcp:org:dmc"));
+
+        assertThat(matcher.size()).isEqualTo(1);
+        assertThat(matcher.matches("urn:mrn:mcp:org:dmc:vessel")).isTrue();
+        assertThat(NamespaceClaimMatcher.of(List.of(""))).isSameAs(NamespaceClaimMatcher.NONE);
+        assertThat(NamespaceClaimMatcher.NONE.matches("urn:mrn:mcp")).isFalse();
+    }
+
+    @Test
+    void matchesAllOnlyIfEveryMrnMatches() {
+        NamespaceClaimMatcher matcher = NamespaceClaimMatcher.of(List.of("urn:mrn:mcp", "urn:mrn:iala"));
+
+        assertThat(matcher.matchesAll(List.of("urn:mrn:mcp:a", "urn:mrn:iala:b"))).isTrue();
+        assertThat(matcher.matchesAll(List.of("urn:mrn:mcp:a", "urn:mrn:iho:b"))).isFalse();
+        assertThat(matcher.matchesAll(List.of())).isTrue();
+    }
+}
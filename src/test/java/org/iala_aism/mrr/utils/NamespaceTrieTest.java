@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NamespaceTrieTest {
+
+    @Test
+    void findsNearestParentNamespace() {
+        NamespaceTrie<String> trie = new NamespaceTrie<>();
+        trie.put("urn:mrn:mcp", "mcp");
+        trie.put("urn:mrn:mcp:org:dmc", "dmc");
+
+        assertThat(trie.findNearest("urn:mrn:mcp:org:dmc:service:abc")).contains("dmc");
+        assertThat(trie.findNearest("urn:mrn:mcp:org:dmc")).contains("dmc");
+        assertThat(trie.findNearest("urn:mrn:mcp:org:iala")).contains("mcp");
+        assertThat(trie.findNearest("urn:mrn:iho")).isEmpty();
+    }
+
+    @Test
+    void onlyMatchesWholeSegments() {
+        NamespaceTrie<String> trie = new NamespaceTrie<>();
+        trie.put("urn:mrn:mcp:org:dmc", "dmc");
+
+        assertThat(trie.findNearest("urn:mrn:mcp:org:dmcx")).isEmpty();
+        assertThat(trie.get("urn:mrn:mcp:org")).isNull();
+    }
+
+    @Test
+    void removesEntriesAndKeepsOthers() {
+        NamespaceTrie<String> trie = new NamespaceTrie<>();
+        trie.put("urn:mrn:mcp", "mcp");
+        trie.put("urn:mrn:mcp:org:dmc", "dmc");
+
+        assertThat(trie.remove("urn:mrn:mcp:org:dmc")).isEqualTo("dmc");
+        assertThat(trie.remove("urn:mrn:mcp:org:dmc")).isNull();
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(trie.findNearest("urn:mrn:mcp:org:dmc:service")).contains("mcp");
+    }
+
+    @Test
+    void replacesAllEntries() {
+        NamespaceTrie<String> trie = new NamespaceTrie<>();
+        trie.put("urn:mrn:mcp", "mcp");
+        trie.replaceAll(Map.of("urn:mrn:iho", "iho"));
+
+        assertThat(trie.size()).isEqualTo(1);
+        assertThat(trie.findNearest("urn:mrn:mcp:org")).isEmpty();
+        assertThat(trie.findNearest("urn:mrn:iho:s100")).contains("iho");
+    }
+
+    @Test
+    void findsValuesWithinNamespace() {
+        NamespaceTrie<String> trie = new NamespaceTrie<>();
+        trie.put("urn:mrn:mcp:org:dmc:service", "service");
+        trie.put("urn:mrn:iho", "iho");
+        trie.put("urn:mrn:iho:s100", "s100");
+        trie.remove("urn:mrn:iho:s100");
+
+        assertThat(trie.findAnyWithin("urn:mrn:mcp")).contains("service");
+        assertThat(trie.findAnyWithin("urn:mrn:mcp:org:dmc:service")).contains("service");
+        assertThat(trie.findAnyWithin("urn:mrn:mcp:org:dm")).isEmpty();
+        assertThat(trie.findAnyWithin("urn:mrn:iho:s100")).isEmpty();
+        assertThat(trie.findAnyWithin("urn:mrn:iho")).contains("iho");
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 International Association of Marine Aids to Navigation and Lighthouse Authorities
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.iala_aism.mrr.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SemverRangeTest {
+
+    @Test
+    void resolvesComparatorSets() {
+        SemverRange range = SemverRange.parse(">=1.2.0 <2.0.0");
+
+        assertThat(range.contains(version("1.2.0"))).isTrue();
+        assertThat(range.contains(version("1.9.13"))).isTrue();
+        assertThat(range.contains(version("1.1.9"))).isFalse();
+        assertThat(range.contains(version("2.0.0"))).isFalse();
+    }
+
+    @Test
+    void resolvesCaretAndTildeRanges() {
+        assertThat(SemverRange.parse("^1.4").contains(version("1.99.0"))).isTrue();
+        assertThat(SemverRange.parse("^1.4").contains(version("2.0.0"))).isFalse();
+        assertThat(SemverRange.parse("^0.2.3").contains(version("0.2.9"))).isTrue();
+        assertThat(SemverRange.parse("^0.2.3").contains(version("0.3.0"))).isFalse();
+        assertThat(SemverRange.parse("~2.1.0").contains(version("2.1.7"))).isTrue();
+        assertThat(SemverRange.parse("~2.1.0").contains(version("2.2.0"))).isFalse();
+    }
+
+    @Test
+    void resolvesUnionsWildcardsAndHyphens() {
+        SemverRange range = SemverRange.parse("1.2.x || 3.x || 5.0.0 - 5.1");
+
+        assertThat(range.getIntervals()).hasSize(3);
+        assertThat(range.contains(version("1.2.5"))).isTrue();
+        assertThat(range.contains(version("3.7.1"))).isTrue();
+        assertThat(range.contains(version("5.1.4"))).isTrue();
+        assertThat(range.contains(version("5.2.0"))).isFalse();
+        assertThat(range.contains(version("2.0.0"))).isFalse();
+    }
+
+    @Test
+    void recognizesUnsatisfiableRanges() {
+        assertThat(SemverRange.parse(">=2.0.0 <1.0.0").isEmpty()).isTrue();
+        assertThat(SemverRange.parse("<*").isEmpty()).isTrue();
+        assertThat(SemverRange.parse("*").isEmpty()).isFalse();
+    }
+
+    @Test
+    void rejectsInvalidRanges() {
+        assertThatThrownBy(() -> SemverRange.parse(">=1.a.0")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SemverRange.parse("!1.0.0")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static SemanticVersion version(String version) {
+        return SemanticVersion.tryParse(version).orElseThrow();
+    }
+}